@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.benchmark;
+
+import de.progme.iris.index.PerfectHashMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares header and key lookups in a hash map with lookups in a frozen perfect hash map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+    @Param({"16", "1024", "65536"})
+    private int size;
+
+    private Map<String, Integer> hashMap;
+
+    private Map<String, Integer> perfectHashMap;
+
+    /**
+     * The names to look up, equal but not identical to the keys like names from user code.
+     */
+    private String[] names;
+
+    @Setup
+    public void setup() {
+
+        hashMap = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            hashMap.put("backend-" + i, i);
+        }
+        perfectHashMap = PerfectHashMap.of(hashMap);
+
+        names = new String[1024];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = new String("backend-" + (i * 7919 % size));
+            names[i].hashCode();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void hashMap(Blackhole blackhole) {
+
+        for (String name : names) {
+            blackhole.consume(hashMap.get(name));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void perfectHashMap(Blackhole blackhole) {
+
+        for (String name : names) {
+            blackhole.consume(perfectHashMap.get(name));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.benchmark;
+
+import de.progme.iris.IrisReader;
+import de.progme.iris.io.ByteScanner;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares scanning a generated config eight bytes at a time with scanning it byte by byte.
+ *
+ * The reader benchmarks run in forks with and without the iris.scalar property, so they measure
+ * the whole tokenizer with both scanners.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScanBenchmark {
+
+    @Param({"64"})
+    private int megabytes;
+
+    private byte[] source;
+
+    private ByteScanner scanner;
+
+    @Setup
+    public void setup() {
+
+        StringBuilder builder = new StringBuilder(megabytes << 20);
+        for (int header = 0; builder.length() < megabytes << 20; header++) {
+            builder.append("# Generated routes of backend ").append(header).append('\n');
+            builder.append("backend-").append(header).append(":\n");
+            for (int key = 0; key < 32; key++) {
+                builder.append("    route-").append(key).append(" 10.").append(header % 256).append('.').append(key)
+                        .append(".1 8080 weight=").append(key % 7).append(" /api/v1/tenants/").append(header).append('\n');
+            }
+        }
+
+        source = builder.toString().getBytes(StandardCharsets.US_ASCII);
+        scanner = new ByteScanner(source);
+    }
+
+    @Benchmark
+    public int linesSwar() {
+
+        int lines = 0;
+        for (int position = 0; position < source.length; position++, lines++) {
+            position = scanner.indexOfLineEnd(position, source.length);
+        }
+
+        return lines;
+    }
+
+    @Benchmark
+    public int linesScalar() {
+
+        int lines = 0;
+        for (int position = 0; position < source.length; position++, lines++) {
+            position = ByteScanner.indexOfLineEnd(source, position, source.length);
+        }
+
+        return lines;
+    }
+
+    @Benchmark
+    public void readerSwar(Blackhole blackhole) throws Exception {
+
+        read(blackhole);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Diris.scalar=true")
+    public void readerScalar(Blackhole blackhole) throws Exception {
+
+        read(blackhole);
+    }
+
+    private void read(Blackhole blackhole) throws Exception {
+
+        IrisReader reader = new IrisReader(source);
+        for (IrisReader.Event event = reader.next(); event != null; event = reader.next()) {
+            blackhole.consume(event);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris;
+
+import de.progme.iris.config.Header;
+import de.progme.iris.config.Key;
+import de.progme.iris.config.Value;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Writes a config back to the layout of its source.
+ *
+ * The source is the document: comments, blank lines, indentation, line terminators and the order
+ * of all lines are kept, and unchanged lines are copied as they are in contiguous runs.
+ * Only changed keys are rewritten in place, new keys are written after the last key of their header
+ * and new headers at the end. The output is streamed through one reusable buffer.
+ */
+class ConfigWriter {
+
+    private static final byte[] DEFAULT_INDENT = "    ".getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[] source;
+
+    private final Map<String, Header> headers;
+
+    private final OutputStream out;
+
+    private final byte[] buffer = new byte[8192];
+
+    private int size;
+
+    /**
+     * The range of source bytes which is copied next.
+     */
+    private int runStart = -1;
+
+    private int runEnd = -1;
+
+    /**
+     * The range of blank and comment lines which is copied before the next key or header.
+     */
+    private int pendingStart = -1;
+
+    private int pendingEnd = -1;
+
+    /**
+     * Whether the last written byte ends a line.
+     */
+    private boolean lineStart = true;
+
+    private byte[] newLine = {'\n'};
+
+    private final Set<Key> written = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private final Set<Header> finished = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    ConfigWriter(byte[] source, Map<String, Header> headers, OutputStream out) {
+
+        this.source = source;
+        this.headers = headers;
+        this.out = out;
+    }
+
+    /**
+     * Writes the config.
+     *
+     * @throws IOException If the output could not be written.
+     */
+    void write() throws IOException {
+
+        Set<String> seen = new HashSet<>();
+        Header current = null;
+        byte[] indent = DEFAULT_INDENT;
+
+        int lineNumber = 0;
+        for (int position = 0; position < source.length; ) {
+            lineNumber++;
+            int end = IrisConfig.lineEnd(source, position);
+            int next = IrisConfig.nextLine(source, position);
+            if (lineNumber == 1 && end < next) {
+                newLine = Arrays.copyOfRange(source, end, next);
+            }
+
+            if (end == position || source[position] == '#') {
+                if (pendingStart == -1) {
+                    pendingStart = position;
+                }
+                pendingEnd = next;
+                position = next;
+                continue;
+            }
+
+            int start = position;
+            int trimmedEnd = end;
+            while (start < end && (source[start] & 0xFF) <= ' ') {
+                start++;
+            }
+            while (trimmedEnd > start && (source[trimmedEnd - 1] & 0xFF) <= ' ') {
+                trimmedEnd--;
+            }
+
+            if (trimmedEnd > start && source[trimmedEnd - 1] == ':') {
+                finish(current, indent);
+                flushPending();
+                raw(position, next);
+
+                String name = IrisConfig.headerName(source, start, trimmedEnd - 1);
+                seen.add(name);
+                // A header name can occur more than once, only the section which was loaded last is the header
+                Header header = headers.get(name);
+                current = header != null && header.getLine() == lineNumber ? header : null;
+                indent = DEFAULT_INDENT;
+            } else {
+                flushPending();
+
+                int nameEnd = start;
+                int values = 0;
+                while (nameEnd < trimmedEnd && source[nameEnd] != ' ') {
+                    nameEnd++;
+                }
+                for (int i = nameEnd; i < trimmedEnd; i++) {
+                    if (source[i] == ' ') {
+                        values++;
+                    }
+                }
+
+                indent = Arrays.copyOfRange(source, position, start);
+                Key key = current != null ? current.getKey(new String(source, start, nameEnd - start, StandardCharsets.UTF_8)) : null;
+
+                if (key != null && key.getLine() == lineNumber && !written.contains(key)) {
+                    written.add(key);
+                    // Every loaded value counted as one change, so more changes mean the values changed
+                    if (key.getModCount() == values) {
+                        raw(position, next);
+                    } else {
+                        key(indent, key, Arrays.copyOfRange(source, end, next));
+                    }
+                } else if (key != null && key.getLine() == 0 && !written.contains(key)) {
+                    // The key was replaced by a new one with the same name
+                    written.add(key);
+                    key(indent, key, Arrays.copyOfRange(source, end, next));
+                } else {
+                    raw(position, next);
+                }
+            }
+
+            position = next;
+        }
+
+        finish(current, indent);
+        flushPending();
+
+        for (Header header : headers.values()) {
+            if (!seen.contains(header.getName())) {
+                startLine();
+                text(header.getName());
+                text(":");
+                put(newLine);
+                finish(header, DEFAULT_INDENT);
+            }
+        }
+
+        flushRun();
+        flush();
+    }
+
+    /**
+     * Writes the keys of the given header which are not written yet.
+     */
+    private void finish(Header header, byte[] indent) throws IOException {
+
+        if (header == null || !finished.add(header)) {
+            return;
+        }
+
+        for (Key key : header.getKeys()) {
+            if (!written.contains(key) && !header.isInherited(key)) {
+                written.add(key);
+                key(indent, key, newLine);
+            }
+        }
+    }
+
+    private void key(byte[] indent, Key key, byte[] terminator) throws IOException {
+
+        startLine();
+        put(indent);
+        text(key.getName());
+        for (Value value : key.getValues()) {
+            text(" ");
+            text(value.asRawString());
+        }
+        put(terminator);
+    }
+
+    /**
+     * Ends the current line if the output does not end with a line terminator, e.g. at the end of the source.
+     */
+    private void startLine() throws IOException {
+
+        flushRun();
+        if (!lineStart) {
+            put(newLine);
+        }
+    }
+
+    private void flushPending() throws IOException {
+
+        if (pendingStart != -1) {
+            raw(pendingStart, pendingEnd);
+            pendingStart = pendingEnd = -1;
+        }
+    }
+
+    /**
+     * Adds the given source range to the current run or starts a new run.
+     */
+    private void raw(int start, int end) throws IOException {
+
+        if (start != runEnd) {
+            flushRun();
+            runStart = start;
+        }
+
+        runEnd = end;
+    }
+
+    /**
+     * Writes the current run of unchanged source lines.
+     */
+    private void flushRun() throws IOException {
+
+        if (runStart != -1) {
+            put(source, runStart, runEnd - runStart);
+            runStart = runEnd = -1;
+        }
+    }
+
+    private void text(String text) throws IOException {
+
+        put(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void put(byte[] bytes) throws IOException {
+
+        put(bytes, 0, bytes.length);
+    }
+
+    private void put(byte[] bytes, int offset, int length) throws IOException {
+
+        if (length == 0) {
+            return;
+        }
+
+        if (length >= buffer.length) {
+            flush();
+            out.write(bytes, offset, length);
+        } else {
+            if (size + length > buffer.length) {
+                flush();
+            }
+            System.arraycopy(bytes, offset, buffer, size, length);
+            size += length;
+        }
+
+        lineStart = bytes[offset + length - 1] == '\n' || bytes[offset + length - 1] == '\r';
+    }
+
+    private void flush() throws IOException {
+
+        if (size > 0) {
+            out.write(buffer, 0, size);
+            size = 0;
+        }
+    }
+}
@@ -23,11 +23,15 @@ import de.progme.iris.config.Header;
 import de.progme.iris.config.Key;
 import de.progme.iris.config.Value;
 import de.progme.iris.exception.IrisException;
+import de.progme.iris.exception.IrisLoadConfigException;
+import de.progme.iris.offheap.OffHeapIrisConfig;
+import de.progme.iris.schema.Schema;
 
 import java.io.File;
 import java.net.URI;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Predicate;
 
 /**
  * Created by Marvin Erkes on 17.06.2016.
@@ -66,7 +70,8 @@ public final class Iris {
     /**
      * Creates a new iris config from the given uri.
      *
-     * Useful if you want to load a file in the resources.
+     * Useful if you want to load a file in the resources. Http and https uris are downloaded
+     * and cached on disk, see {@link RemoteConfig}.
      *
      * @param uri The uri.
      * @return A new iris config.
@@ -74,6 +79,10 @@ public final class Iris {
      */
     public static IrisBuilder from(URI uri) throws IrisException {
 
+        if ("http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme())) {
+            return new IrisBuilder(uri);
+        }
+
         return from(new File(uri));
     }
 
@@ -99,11 +108,51 @@ public final class Iris {
          */
         private File file;
 
+        /**
+         * The http or https uri of a remote config.
+         */
+        private URI uri;
+
+        /**
+         * The directory which caches remote configs.
+         */
+        private File cacheDirectory = new File(System.getProperty("java.io.tmpdir"), "iris");
+
         /**
          * All default headers for the config.
          */
         private Map<String, Header> headers = new HashMap<>();
 
+        /**
+         * The schema to validate the config with.
+         */
+        private Schema schema;
+
+        /**
+         * The filter of the headers which are loaded or null to load all headers.
+         */
+        private Predicate<String> headerFilter;
+
+        /**
+         * Whether references between values are resolved.
+         */
+        private boolean interpolate;
+
+        /**
+         * Whether the config is stored off heap.
+         */
+        private boolean offHeap;
+
+        /**
+         * Whether the headers and keys are frozen after building.
+         */
+        private boolean freeze;
+
+        /**
+         * Whether an index from values to their locations is built.
+         */
+        private boolean reverseIndex;
+
         /**
          * Creates a new builder for the given config file.
          * @param file The config file.
@@ -113,6 +162,15 @@ public final class Iris {
             this.file = file;
         }
 
+        /**
+         * Creates a new builder for the given http or https uri.
+         * @param uri The uri of the config.
+         */
+        public IrisBuilder(URI uri) {
+
+            this.uri = uri;
+        }
+
         /**
          * Adds a default header with the given key and the values.
          *
@@ -149,6 +207,115 @@ public final class Iris {
             return this;
         }
 
+        /**
+         * Sets the schema which validates the config and converts its values once while building.
+         *
+         * @param schema The schema.
+         * @return This iris builder.
+         */
+        public IrisBuilder schema(Schema schema) {
+
+            this.schema = schema;
+
+            return this;
+        }
+
+        /**
+         * Loads only the headers with the given names.
+         *
+         * The other headers are skipped while scanning the file, their keys and values are never parsed.
+         * Headers which the loaded headers inherit from are loaded too, defaults are added as usual.
+         *
+         * @param headers The names of the headers.
+         * @return This iris builder.
+         */
+        public IrisBuilder only(String... headers) {
+
+            Set<String> names = new HashSet<>(Arrays.asList(headers));
+
+            return only(names::contains);
+        }
+
+        /**
+         * Loads only the headers whose names match the given predicate.
+         *
+         * @param headerFilter The predicate of the header names.
+         * @return This iris builder.
+         * @see #only(String...)
+         */
+        public IrisBuilder only(Predicate<String> headerFilter) {
+
+            this.headerFilter = headerFilter;
+
+            return this;
+        }
+
+        /**
+         * Enables references like ${header.key}, ${header.key[1]}, ${env:NAME} or ${sys:name} in values.
+         *
+         * The references are checked while building and every value is resolved once on its first access.
+         *
+         * @return This iris builder.
+         */
+        public IrisBuilder interpolate() {
+
+            this.interpolate = true;
+
+            return this;
+        }
+
+        /**
+         * Stores the headers, keys and values in direct memory instead of the java heap.
+         *
+         * Useful for very large configs, the built config is read only. Interpolation, freezing and
+         * reverse indexes are not supported.
+         *
+         * @return This iris builder.
+         */
+        public IrisBuilder offHeap() {
+
+            this.offHeap = true;
+
+            return this;
+        }
+
+        /**
+         * Freezes the headers and keys after building, so they are looked up with minimal perfect hashes.
+         *
+         * @return This iris builder.
+         */
+        public IrisBuilder freeze() {
+
+            this.freeze = true;
+
+            return this;
+        }
+
+        /**
+         * Builds an index from values to their locations, so IrisConfig#findByValue is a single hash lookup.
+         *
+         * @return This iris builder.
+         */
+        public IrisBuilder reverseIndex() {
+
+            this.reverseIndex = true;
+
+            return this;
+        }
+
+        /**
+         * Sets the directory which caches remote configs, the default is iris in the temporary directory.
+         *
+         * @param directory The cache directory.
+         * @return This iris builder.
+         */
+        public IrisBuilder cache(File directory) {
+
+            this.cacheDirectory = directory;
+
+            return this;
+        }
+
         /**
          * Builds the iris config from this builder.
          *
@@ -157,6 +324,40 @@ public final class Iris {
          */
         public IrisConfig build() throws IrisException {
 
+            if (uri != null) {
+                return remote().get();
+            }
+
+            return build(file);
+        }
+
+        /**
+         * Builds a remote config from the http or https uri of this builder, which can be polled for changes.
+         *
+         * @return The remote config.
+         * @throws IrisException If the config could neither be downloaded nor loaded from the cache.
+         */
+        public RemoteConfig remote() throws IrisException {
+
+            if (uri == null) {
+                throw new IllegalStateException("only http and https configs are remote");
+            }
+            if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
+                throw new IrisLoadConfigException("could not create cache directory '" + cacheDirectory + "'");
+            }
+
+            return new RemoteConfig(uri, this, cacheDirectory);
+        }
+
+        /**
+         * Builds the iris config from the given file with the settings of this builder.
+         */
+        IrisConfig build(File file) throws IrisException {
+
+            if (offHeap) {
+                return new OffHeapIrisConfig(file, this);
+            }
+
             return new IrisConfig(file, this);
         }
 
@@ -169,5 +370,65 @@ public final class Iris {
 
             return Collections.unmodifiableList(new ArrayList<>(headers.values()));
         }
+
+        /**
+         * Returns the schema of the config.
+         *
+         * @return The schema or null if no schema is set.
+         */
+        public Schema getSchema() {
+
+            return schema;
+        }
+
+        /**
+         * Returns the filter of the headers which are loaded.
+         *
+         * @return The filter or null if all headers are loaded.
+         */
+        public Predicate<String> getHeaderFilter() {
+
+            return headerFilter;
+        }
+
+        /**
+         * Returns whether references between values are resolved.
+         *
+         * @return True if references are resolved.
+         */
+        public boolean isInterpolate() {
+
+            return interpolate;
+        }
+
+        /**
+         * Returns whether the config is stored off heap.
+         *
+         * @return True if the config is stored off heap.
+         */
+        public boolean isOffHeap() {
+
+            return offHeap;
+        }
+
+        /**
+         * Returns whether the headers and keys are frozen after building.
+         *
+         * @return True if the config is frozen.
+         */
+        public boolean isFreeze() {
+
+            return freeze;
+        }
+
+        /**
+         * Returns whether an index from values to their locations is built.
+         *
+         * @return True if the reverse index is built.
+         */
+        public boolean isReverseIndex() {
+
+            return reverseIndex;
+        }
     }
 }
@@ -20,19 +20,35 @@
 package de.progme.iris;
 
 import de.progme.iris.config.Header;
+import de.progme.iris.config.Interpolation;
 import de.progme.iris.config.Key;
 import de.progme.iris.config.Value;
 import de.progme.iris.exception.IrisEmptyConfigException;
 import de.progme.iris.exception.IrisException;
 import de.progme.iris.exception.IrisInvalidConfigException;
 import de.progme.iris.exception.IrisLoadConfigException;
+import de.progme.iris.index.NameIndex;
+import de.progme.iris.io.ByteScanner;
+import de.progme.iris.io.ConfigFiles;
+import de.progme.iris.index.PerfectHashMap;
+import de.progme.iris.index.ReverseIndex;
+import de.progme.iris.index.ValueLocation;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * Created by Marvin Erkes on 18.06.2016.
@@ -42,15 +58,53 @@ public class IrisConfig {
     private File file;
 
     /**
-     * The config file line by line as a list.
+     * The content of the config file, all loaded values are slices of it.
+     * If only some headers were loaded, the lines of the other headers are blank.
      */
-    private List<String> config = new ArrayList<>();
+    private byte[] source = new byte[0];
+
+    /**
+     * True if only some headers were loaded, the file is read again to save the other headers.
+     */
+    private boolean filtered;
+
+    /**
+     * True if the config file is gzip compressed, it is saved compressed too.
+     */
+    private boolean compressed;
 
     /**
      * All headers from the config.
      */
     private Map<String, Header> headers = new HashMap<>();
 
+    /**
+     * The header which is currently parsed.
+     */
+    private Header currentHeader;
+
+    /**
+     * The names of the parents of the headers which inherit keys, only used while loading.
+     */
+    private Map<Header, String> parents;
+
+    /**
+     * The sorted index of the headers which is built on the first prefix or glob query.
+     */
+    private NameIndex<Header> index;
+
+    /**
+     * The index from values to their locations or null if it is not enabled.
+     */
+    private ReverseIndex reverseIndex;
+
+    /**
+     * Creates a new empty iris config, used by configs which store their headers themselves.
+     */
+    protected IrisConfig() {
+
+    }
+
     /**
      * Creates a new iris config from the given file.
      *
@@ -59,20 +113,215 @@ public class IrisConfig {
      */
     protected IrisConfig(File file) throws IrisException {
 
+        this(file, (Predicate<String>) null);
+    }
+
+    /**
+     * Creates a new iris config from the given file with only the headers which match the given filter.
+     *
+     * @param file The config file.
+     * @param headerFilter The filter of the header names or null to load all headers.
+     * @throws IrisException If something went wrong.
+     */
+    IrisConfig(File file, Predicate<String> headerFilter) throws IrisException {
+
+        this.file = file;
+
+        try {
+            this.compressed = ConfigFiles.isCompressed(file);
+            this.source = ConfigFiles.readAllBytes(file);
+        } catch (IOException e) {
+            throw new IrisLoadConfigException("could not load config file '" + file.getName() + "'");
+        }
+
+        load(headerFilter);
+    }
+
+    /**
+     * Creates a new iris config from the given content, which is used as the source of a file.
+     *
+     * @param file The config file or null.
+     * @param source The content of the config.
+     * @param compressed Whether the config is saved compressed.
+     * @param headerFilter The filter of the header names or null to load all headers.
+     * @throws IrisException If the content is invalid.
+     */
+    IrisConfig(File file, byte[] source, boolean compressed, Predicate<String> headerFilter) throws IrisException {
+
         this.file = file;
+        this.source = source;
+        this.compressed = compressed;
+
+        load(headerFilter);
+    }
+
+    /**
+     * Parses the source into headers, keys and values.
+     *
+     * @param headerFilter The filter of the header names or null to load all headers.
+     * @throws IrisException If the source is invalid.
+     */
+    private void load(Predicate<String> headerFilter) throws IrisException {
+
+        parse(headerFilter);
+
+        // Loads the headers which the loaded headers inherit from, they can be anywhere in the source
+        while (headerFilter != null && parents != null) {
+            Set<String> missing = new HashSet<>();
+            for (String parent : parents.values()) {
+                if (!headers.containsKey(parent)) {
+                    missing.add(parent);
+                }
+            }
+            if (missing.isEmpty()) {
+                break;
+            }
+
+            int loaded = headers.size();
+            parse(missing::contains);
+            if (headers.size() == loaded) {
+                // The missing parents are reported while flattening
+                break;
+            }
+        }
+
+        if (parents != null) {
+            Set<Header> visiting = Collections.newSetFromMap(new IdentityHashMap<>());
+            Set<Header> done = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Header header : parents.keySet()) {
+                inherit(header, visiting, done);
+            }
+            parents = null;
+        }
+
+        if (headerFilter != null) {
+            filtered = true;
+
+            // Only the loaded sections of the source are kept, the values are parsed again as slices of them
+            byte[] loaded = loadedLines(source);
+            if (loaded.length < source.length) {
+                source = loaded;
+                headers = new HashMap<>();
+                index = null;
+                load(null);
+            }
+        }
+    }
+
+    /**
+     * Returns the given content with only the lines of the loaded headers, the other lines are replaced
+     * by their line terminators, so the line numbers stay the same.
+     *
+     * @param content The content of the config file.
+     * @return The loaded lines.
+     */
+    private byte[] loadedLines(byte[] content) {
+
+        byte[] loaded = new byte[content.length];
+        int size = 0;
+        boolean loading = true;
+
+        int lineNumber = 0;
+        for (int position = 0; position < content.length; ) {
+            lineNumber++;
+            int end = lineEnd(content, position);
+            int next = nextLine(content, position);
+
+            if (end > position && content[position] != '#') {
+                int trimmedEnd = end;
+                while (trimmedEnd > position && (content[trimmedEnd - 1] & 0xFF) <= ' ') {
+                    trimmedEnd--;
+                }
+                if (trimmedEnd > position && content[trimmedEnd - 1] == ':') {
+                    Header header = headers.get(headerName(content, position, trimmedEnd - 1));
+                    loading = header != null && header.getLine() == lineNumber;
+                }
+            }
+
+            int start = loading ? position : end;
+            System.arraycopy(content, start, loaded, size, next - start);
+            size += next - start;
+            position = next;
+        }
+
+        return size < loaded.length ? Arrays.copyOf(loaded, size) : loaded;
+    }
+
+    /**
+     * Parses the headers of the source which match the given filter, the other headers are skipped while scanning.
+     *
+     * @param headerFilter The filter of the header names or null to parse all headers.
+     * @throws IrisException If the source is invalid.
+     */
+    private void parse(Predicate<String> headerFilter) throws IrisException {
+
+        IrisReader reader = new IrisReader(source);
+        Key key = null;
+        try {
+            for (IrisReader.Event event = reader.next(); event != null; event = reader.next()) {
+                switch (event) {
+                    case HEADER:
+                        if (headerFilter != null && !headerFilter.test(reader.getText())) {
+                            reader.skipHeader();
+                            break;
+                        }
+
+                        currentHeader = new Header(reader.getText(), reader.getLine());
+                        headers.put(currentHeader.getName(), currentHeader);
+                        index = null;
 
-        try (BufferedReader bufferedReader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = bufferedReader.readLine()) != null) {
-                if (!line.isEmpty() && !line.startsWith("#")) {
-                    this.config.add(line.trim());
+                        if (reader.getParent() != null) {
+                            if (parents == null) {
+                                parents = new LinkedHashMap<>();
+                            }
+                            parents.put(currentHeader, reader.getParent());
+                        }
+                        break;
+                    case KEY:
+                        key = new Key(reader.getText(), reader.getLine());
+                        currentHeader.addKey(key);
+                        break;
+                    case VALUE:
+                        // The values are slices of the source
+                        key.addValue(new Value(source, reader.offset(), reader.length()));
+                        break;
                 }
             }
         } catch (IOException e) {
-            throw new IrisLoadConfigException("could not load config file '" + file.getName() + "'");
+            throw new IrisLoadConfigException("could not read config source");
+        }
+    }
+
+    /**
+     * Flattens the keys of the parents into the given header, parents first.
+     *
+     * @param header The header.
+     * @param visiting The headers on the current inheritance path.
+     * @param done The headers which are flattened already.
+     * @throws IrisInvalidConfigException If the parent is missing or the header inherits from itself.
+     */
+    private void inherit(Header header, Set<Header> visiting, Set<Header> done) throws IrisInvalidConfigException {
+
+        String parentName = parents.get(header);
+        if (parentName == null || done.contains(header)) {
+            return;
+        }
+
+        if (!visiting.add(header)) {
+            throw new IrisInvalidConfigException("line " + header.getLine() + ": header '" + header.getName() + "' inherits from itself", header.getLine());
+        }
+
+        Header parent = headers.get(parentName);
+        if (parent == null) {
+            throw new IrisInvalidConfigException("line " + header.getLine() + ": header '" + header.getName()
+                    + "' inherits from the missing header '" + parentName + "'", header.getLine());
         }
 
-        parse();
+        inherit(parent, visiting, done);
+        header.inherit(parent);
+
+        visiting.remove(header);
+        done.add(header);
     }
 
     /**
@@ -83,22 +332,53 @@ public class IrisConfig {
      */
     protected IrisConfig(File file, Iris.IrisBuilder irisBuilder) throws IrisException {
 
-        this(file);
+        this(file, irisBuilder.getHeaderFilter());
 
-        // Check if there are default values
-        if (irisBuilder.getHeaders().isEmpty()) {
-            return;
-        }
+        apply(irisBuilder);
+    }
+
+    /**
+     * Applies the defaults, interpolation, schema, reverse index and freezing of the given builder to the loaded headers.
+     *
+     * @param irisBuilder The builder instance.
+     * @throws IrisException If the references or the values are invalid.
+     */
+    void apply(Iris.IrisBuilder irisBuilder) throws IrisException {
 
         // Sets possible default values
-        for (Header builderHeader : irisBuilder.getHeaders()) {
+        applyDefaults(irisBuilder.getHeaders());
+
+        // Checks the references between values, they are resolved lazily
+        if (irisBuilder.isInterpolate()) {
+            Interpolation.attach(headers.values());
+        }
+
+        // Converts and validates the values if a schema is given
+        if (irisBuilder.getSchema() != null) {
+            irisBuilder.getSchema().apply(this);
+        }
+
+        if (irisBuilder.isReverseIndex()) {
+            reverseIndex = ReverseIndex.build(headers.values());
+        }
+
+        if (irisBuilder.isFreeze()) {
+            freeze();
+        }
+    }
+
+    /**
+     * Adds the given default headers, keys and values if they are missing in the config.
+     *
+     * @param defaults The default headers.
+     */
+    private void applyDefaults(List<Header> defaults) {
+
+        for (Header builderHeader : defaults) {
             Header header = headers.get(builderHeader.getName());
             if (header == null) {
                 headers.put(builderHeader.getName(), builderHeader);
-                config.add(builderHeader.getName() + ":");
-                for(Key key : builderHeader.getKeys()) {
-                    config.add("  " + key.getName() + " " + key.getValues().stream().map(Value::asString).collect(Collectors.joining(" ")));
-                }
+                index = null;
             } else {
                 for (Key builderKey : builderHeader.getKeys()) {
                     if (!header.hasKey(builderKey.getName())) {
@@ -106,6 +386,11 @@ public class IrisConfig {
                     } else {
                         Key key = header.getKey(builderKey.getName());
                         if (!key.hasValues()) {
+                            if (header.isInherited(key)) {
+                                // The key is shared with the parent, so the default only goes into a key of this header
+                                key = new Key(key.getName());
+                                header.addKey(key);
+                            }
                             builderKey.getValues().forEach(key::addValue);
                         }
                     }
@@ -115,57 +400,182 @@ public class IrisConfig {
     }
 
     /**
-     * Parses the config lines.
-     *
-     * @throws IrisException If something went wrong during the parsing.
+     * Returns the name of a header line without the colon, which is the part before the < of an inheriting header.
      */
-    private void parse() throws IrisException {
+    static String headerName(byte[] source, int start, int end) {
+
+        return trimmed(source, start, indexOf(source, '<', start, end));
+    }
 
-        Header currentHeader = null;
+    private static String trimmed(byte[] source, int start, int end) {
 
-        for (int i = 0; i < config.size(); i++) {
-            String line = config.get(i);
+        while (start < end && (source[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (source[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
 
-            if (line.endsWith(":")) {
-                if (currentHeader != null) {
-                    headers.put(currentHeader.getName(), currentHeader);
-                }
+        return new String(source, start, end - start, StandardCharsets.UTF_8);
+    }
 
-                currentHeader = new Header(line.substring(0, line.length() - 1));
-            } else {
-                String[] info = line.split(" ");
-                if (info.length > 0) {
-                    String key = info[0];
-                    String[] options = new String[info.length - 1];
-                    System.arraycopy(info, 1, options, 0, options.length);
-
-                    Key keyData = new Key(key);
-                    for (String option : options) {
-                        keyData.addValue(new Value(option));
-                    }
+    /**
+     * Returns the index of the given byte or the end.
+     */
+    private static int indexOf(byte[] source, char c, int start, int end) {
 
-                    if (currentHeader != null) {
-                        currentHeader.addKey(keyData);
-                    } else {
-                        throw new IrisInvalidConfigException("at least one header at the top is needed");
-                    }
-                }
-            }
+        while (start < end && source[start] != c) {
+            start++;
+        }
 
-            // Add the last header
-            if (i == config.size() - 1) {
-                if (currentHeader != null) {
-                    headers.put(currentHeader.getName(), currentHeader);
-                }
-            }
+        return start;
+    }
+
+    /**
+     * Returns the end of the line which starts at the given position, excluding the line terminator.
+     */
+    static int lineEnd(byte[] source, int position) {
+
+        return ByteScanner.indexOfLineEnd(source, position, source.length);
+    }
+
+    /**
+     * Returns the start of the line after the line which starts at the given position.
+     */
+    static int nextLine(byte[] source, int position) {
+
+        position = lineEnd(source, position);
+        if (position < source.length && source[position] == '\r') {
+            position++;
+        }
+        if (position < source.length && source[position] == '\n') {
+            position++;
         }
+
+        return position;
     }
 
+    /**
+     * Saves the config to its file.
+     *
+     * Comments, blank lines, indentation and the order of the lines are kept,
+     * only changed keys are rewritten and new keys and headers are added.
+     * A gzip compressed config file is written compressed.
+     *
+     * @throws IOException If the file could not be written.
+     */
     public void save() throws IOException {
 
-        FileWriter configWriter = new FileWriter(this.file);
-        configWriter.write(String.join("\n", this.config));
-        configWriter.close();
+        // Read before the file is truncated
+        byte[] document = document();
+        try (OutputStream out = ConfigFiles.newOutputStream(this.file, compressed)) {
+            new ConfigWriter(document, headers, out).write();
+        }
+    }
+
+    /**
+     * Writes the config to the given output stream in the layout of its file.
+     *
+     * The output is streamed, the stream is not closed.
+     *
+     * @param out The output stream.
+     * @throws IOException If the config could not be written.
+     */
+    public void save(OutputStream out) throws IOException {
+
+        new ConfigWriter(document(), headers, out).write();
+    }
+
+    /**
+     * Writes the config to the given channel in the layout of its file.
+     *
+     * The output is streamed, the channel is not closed.
+     *
+     * @param channel The channel.
+     * @throws IOException If the config could not be written.
+     */
+    public void save(WritableByteChannel channel) throws IOException {
+
+        save(Channels.newOutputStream(channel));
+    }
+
+    /**
+     * Returns the document which is written, which is the config file again if only some headers were loaded.
+     *
+     * @throws IOException If the file could not be read or its loaded headers changed since loading.
+     */
+    private byte[] document() throws IOException {
+
+        if (!filtered) {
+            return source;
+        }
+
+        byte[] document = ConfigFiles.readAllBytes(file);
+        if (!Arrays.equals(loadedLines(document), source)) {
+            throw new IOException("the loaded headers of config file '" + file.getName() + "' changed since loading");
+        }
+
+        return document;
+    }
+
+    /**
+     * Points the config to the file it was moved to, so it is saved there.
+     *
+     * @param file The new config file.
+     */
+    void relocate(File file) {
+
+        this.file = file;
+    }
+
+    /**
+     * Returns the config file.
+     */
+    File file() {
+
+        return file;
+    }
+
+    /**
+     * Returns the content the config was loaded from.
+     */
+    byte[] source() {
+
+        return source;
+    }
+
+    /**
+     * Returns whether the config file is gzip compressed.
+     *
+     * @return True if the config file is compressed.
+     */
+    public boolean isCompressed() {
+
+        return compressed;
+    }
+
+    /**
+     * Freezes the headers and keys of this config, no headers or keys can be added afterwards.
+     *
+     * The headers and keys are stored in minimal perfect hash maps, so every lookup is a single array probe.
+     */
+    public void freeze() {
+
+        for (Header header : headers.values()) {
+            header.freeze();
+        }
+
+        headers = PerfectHashMap.of(headers);
+    }
+
+    /**
+     * Returns whether the headers and keys of this config are frozen.
+     *
+     * @return True if the config is frozen.
+     */
+    public boolean isFrozen() {
+
+        return headers instanceof PerfectHashMap;
     }
 
     /**
@@ -201,4 +611,148 @@ public class IrisConfig {
 
         return headers.get(header);
     }
+
+    /**
+     * Returns the headers whose names start with the given prefix, sorted by their name.
+     *
+     * @param prefix The prefix.
+     * @return The headers as an unmodifiable list.
+     */
+    public List<Header> headersWithPrefix(String prefix) {
+
+        return index().withPrefix(prefix);
+    }
+
+    /**
+     * Returns the headers whose names match the given glob, sorted by their name.
+     *
+     * A * matches any number of characters and a ? matches exactly one character.
+     *
+     * @param glob The glob like server-*.
+     * @return The headers as an unmodifiable list.
+     */
+    public List<Header> findHeaders(String glob) {
+
+        return index().matching(glob);
+    }
+
+    /**
+     * Returns the keys which match the given key glob in all headers which match the given header glob.
+     *
+     * @param headerGlob The glob of the headers like server-*.
+     * @param keyGlob The glob of the keys like bind.
+     * @return The keys as an unmodifiable list, sorted by header and key name.
+     */
+    public List<Key> find(String headerGlob, String keyGlob) {
+
+        boolean keyIsGlob = NameIndex.isGlob(keyGlob);
+
+        List<Key> keys = new ArrayList<>();
+        for (Header header : findHeaders(headerGlob)) {
+            if (keyIsGlob) {
+                keys.addAll(header.findKeys(keyGlob));
+            } else {
+                Key key = header.getKey(keyGlob);
+                if (key != null) {
+                    keys.add(key);
+                }
+            }
+        }
+
+        return Collections.unmodifiableList(keys);
+    }
+
+    private NameIndex<Header> index() {
+
+        NameIndex<Header> current = index;
+        if (current == null) {
+            Map<String, Header> byName = new HashMap<>();
+            for (Header header : getHeaders()) {
+                byName.put(header.getName(), header);
+            }
+            current = index = NameIndex.of(byName);
+        }
+
+        return current;
+    }
+
+    /**
+     * Returns the locations of the given raw value, e.g. to find out which header binds a port.
+     *
+     * This is a single hash lookup if the reverse index is enabled, otherwise all values are scanned.
+     * An inherited value is found once at the header which defines it.
+     *
+     * @param value The raw value.
+     * @return The locations as an unmodifiable list.
+     */
+    public List<ValueLocation> findByValue(String value) {
+
+        if (reverseIndex != null) {
+            return reverseIndex.find(value);
+        }
+
+        List<ValueLocation> locations = new ArrayList<>();
+        for (Header header : getHeaders()) {
+            for (Key key : header.getKeys()) {
+                if (header.isInherited(key)) {
+                    continue;
+                }
+                List<Value> values = key.getValues();
+                for (int i = 0; i < values.size(); i++) {
+                    if (values.get(i).asRawString().equals(value)) {
+                        locations.add(new ValueLocation(header, key, i, value));
+                    }
+                }
+            }
+        }
+
+        return Collections.unmodifiableList(locations);
+    }
+
+    /**
+     * Returns the locations of the values which are the given integer.
+     *
+     * This is a single hash lookup if the reverse index is enabled, otherwise all values are scanned.
+     * An inherited value is found once at the header which defines it.
+     *
+     * @param value The integer.
+     * @return The locations as an unmodifiable list.
+     */
+    public List<ValueLocation> findByValue(long value) {
+
+        if (reverseIndex != null) {
+            return reverseIndex.find(value);
+        }
+
+        List<ValueLocation> locations = new ArrayList<>();
+        for (Header header : getHeaders()) {
+            for (Key key : header.getKeys()) {
+                if (header.isInherited(key)) {
+                    continue;
+                }
+                List<Value> values = key.getValues();
+                for (int i = 0; i < values.size(); i++) {
+                    try {
+                        if (values.get(i).asLong() == value) {
+                            locations.add(new ValueLocation(header, key, i, values.get(i).asRawString()));
+                        }
+                    } catch (NumberFormatException ignored) {
+                        // Not a number
+                    }
+                }
+            }
+        }
+
+        return Collections.unmodifiableList(locations);
+    }
+
+    /**
+     * Returns the headers as an unmodifiable list.
+     *
+     * @return The headers as an unmodifiable list.
+     */
+    public List<Header> getHeaders() {
+
+        return Collections.unmodifiableList(new ArrayList<>(headers.values()));
+    }
 }
@@ -0,0 +1,763 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris;
+
+import de.progme.iris.config.Header;
+import de.progme.iris.config.Key;
+import de.progme.iris.config.Value;
+import de.progme.iris.exception.IrisException;
+import de.progme.iris.index.PersistentMap;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * A bounded history of config versions which can be pinned, compared and reverted.
+ *
+ * Every committed version stores the raw values of the keys each header defines in persistent maps
+ * which share all unchanged headers and keys with the previous version, so keeping many versions
+ * costs about the size of the changes. Keys which did not change since the last commit are detected
+ * by their modification count, reloaded configs are compared by their values.
+ *
+ * A version also keeps the source of the config it was committed from. Only the source of the current
+ * version is kept whole, and it is the source of the current config; an older source only keeps the
+ * range of bytes in which it differs from the next newer one. A reverted config is loaded from its
+ * source with the settings of the history's builder, and only the keys which were changed before the
+ * commit are replaced, so saving it keeps the comments and the layout of the file.
+ *
+ * <pre>
+ * Iris.IrisBuilder builder = Iris.from("config.cop").interpolate();
+ * IrisHistory history = new IrisHistory(16, builder);
+ * history.commit(builder.build());
+ *
+ * try (IrisHistory.Pin pin = history.pin()) {
+ *     handle(request, pin.getVersion());
+ * }
+ *
+ * history.revert(1);
+ * IrisConfig config = history.getConfig();
+ * </pre>
+ */
+public final class IrisHistory {
+
+    private final int maximumVersions;
+
+    /**
+     * The builder whose settings are applied to reverted configs.
+     */
+    private final Iris.IrisBuilder irisBuilder;
+
+    /**
+     * The retained versions, oldest first.
+     */
+    private final List<Version> versions = new ArrayList<>();
+
+    /**
+     * The number of pins per pinned version.
+     */
+    private final Map<Version, Integer> pins = new IdentityHashMap<>();
+
+    /**
+     * The values of every key of the last committed config with its modification count at that time.
+     */
+    private Map<Key, Stamp> stamps = new IdentityHashMap<>();
+
+    private long lastNumber;
+
+    private volatile Version current;
+
+    private volatile IrisConfig config;
+
+    /**
+     * Creates a new history which retains the given number of unpinned versions.
+     *
+     * @param maximumVersions The maximum number of versions.
+     * @param irisBuilder The builder of the committed configs, its settings are applied to reverted configs.
+     */
+    public IrisHistory(int maximumVersions, Iris.IrisBuilder irisBuilder) {
+
+        if (maximumVersions < 1) {
+            throw new IllegalArgumentException("maximumVersions must be at least 1");
+        }
+
+        this.maximumVersions = maximumVersions;
+        this.irisBuilder = Objects.requireNonNull(irisBuilder, "irisBuilder");
+    }
+
+    /**
+     * Records the current state of the given config as a new version and makes it the current config.
+     *
+     * @param config The config, which can be a changed or a reloaded config.
+     * @return The new version or the current version if nothing changed.
+     */
+    public synchronized Version commit(IrisConfig config) {
+
+        PersistentMap<String, PersistentMap<String, List<String>>> previous = current != null ? current.headers : PersistentMap.empty();
+        PersistentMap<String, PersistentMap<String, List<String>>> headers = previous;
+        Map<Key, Stamp> committed = new IdentityHashMap<>();
+
+        List<Header> configHeaders = config.getHeaders();
+        for (Header header : configHeaders) {
+            PersistentMap<String, List<String>> previousKeys = previous.get(header.getName());
+            PersistentMap<String, List<String>> keys = previousKeys != null ? previousKeys : PersistentMap.empty();
+
+            int defined = 0;
+            for (Key key : header.getKeys()) {
+                if (header.isInherited(key)) {
+                    // Stored once at the header which defines it
+                    continue;
+                }
+                defined++;
+
+                List<String> old = keys.get(key.getName());
+                Stamp stamp = stamps.get(key);
+
+                List<String> values;
+                if (stamp != null && stamp.modCount == key.getModCount() && stamp.values == old) {
+                    values = old;
+                } else {
+                    values = values(key);
+                    if (values.equals(old)) {
+                        values = old;
+                    }
+                }
+
+                keys = keys.put(key.getName(), values);
+                committed.put(key, new Stamp(key.getModCount(), values));
+            }
+
+            if (keys.size() > defined) {
+                keys = retain(keys, header);
+            }
+
+            headers = headers.put(header.getName(), keys);
+        }
+
+        if (headers.size() > configHeaders.size()) {
+            List<String> removed = new ArrayList<>();
+            headers.forEach((name, keys) -> {
+                if (!config.hasHeader(name)) {
+                    removed.add(name);
+                }
+            });
+            for (String name : removed) {
+                headers = headers.remove(name);
+            }
+        }
+
+        stamps = committed;
+        this.config = config;
+
+        Source source = share(config.source());
+        if (current != null && headers == current.headers && Objects.equals(config.file(), current.file) && source == current.source) {
+            return current;
+        }
+
+        return append(new Version(++lastNumber, System.currentTimeMillis(), headers, config.file(), source, config.isCompressed()));
+    }
+
+    /**
+     * Returns the source of the current version if the given bytes are the same, otherwise a new source
+     * from which the source of the current version keeps only its differences.
+     */
+    private Source share(byte[] bytes) {
+
+        if (current == null) {
+            return new Source(bytes);
+        }
+
+        Source previous = current.source;
+        if (previous.bytes == bytes) {
+            return previous;
+        }
+
+        if (Arrays.equals(previous.bytes, bytes)) {
+            // A reloaded config with the same content, only its copy is kept
+            previous.bytes = bytes;
+            return previous;
+        }
+
+        Source source = new Source(bytes);
+        previous.diff(source);
+
+        return source;
+    }
+
+    private static PersistentMap<String, List<String>> retain(PersistentMap<String, List<String>> keys, Header header) {
+
+        List<String> removed = new ArrayList<>();
+        keys.forEach((name, values) -> {
+            Key key = header.getKey(name);
+            if (key == null || header.isInherited(key)) {
+                removed.add(name);
+            }
+        });
+        for (String name : removed) {
+            keys = keys.remove(name);
+        }
+
+        return keys;
+    }
+
+    private static List<String> values(Key key) {
+
+        List<Value> values = key.getValues();
+        String[] raw = new String[values.size()];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = values.get(i).asRawString();
+        }
+
+        return Collections.unmodifiableList(Arrays.asList(raw));
+    }
+
+    private Version append(Version version) {
+
+        versions.add(version);
+        current = version;
+        evict();
+
+        return version;
+    }
+
+    /**
+     * Removes the oldest unpinned versions until the history is small enough, must be called while holding the lock.
+     */
+    private void evict() {
+
+        // Pinned versions are always retained and do not count
+        for (Iterator<Version> iterator = versions.iterator(); versions.size() - pins.size() > maximumVersions && iterator.hasNext(); ) {
+            Version version = iterator.next();
+            if (version != current && !pins.containsKey(version)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Makes the given version the current one again, as a new version with the same content.
+     *
+     * The config of the version is loaded from the source it was committed from with the settings
+     * of the builder, and replaces the current config at once. Saving it rewrites only the keys
+     * which were changed before the version was committed.
+     *
+     * @param number The number of the version.
+     * @return The config of the version.
+     * @throws IrisException If the config could not be built.
+     * @throws IllegalArgumentException If the version is not retained.
+     */
+    public synchronized IrisConfig revert(long number) throws IrisException {
+
+        Version version = getVersion(number);
+        if (version == null) {
+            throw new IllegalArgumentException("version " + number + " is not retained");
+        }
+
+        IrisConfig reverted = build(version);
+        Source source = share(reverted.source());
+        stamps = new IdentityHashMap<>();
+        config = reverted;
+        append(new Version(++lastNumber, System.currentTimeMillis(), version.headers, version.file, source, version.compressed));
+
+        return reverted;
+    }
+
+    /**
+     * Loads the source of the given version and replaces the keys whose values differ from the version.
+     */
+    private IrisConfig build(Version version) throws IrisException {
+
+        if (irisBuilder.isOffHeap()) {
+            throw new IrisException("off-heap configs can not be reverted");
+        }
+
+        IrisConfig reverted = new IrisConfig(version.file, version.source.toBytes(), version.compressed, irisBuilder.getHeaderFilter());
+
+        version.headers.forEach((name, keys) -> {
+            Header header = reverted.getHeader(name);
+            if (header == null) {
+                // A default header, the builder adds it again
+                return;
+            }
+
+            keys.forEach((keyName, values) -> {
+                Key key = header.getKey(keyName);
+                if (key == null || header.isInherited(key) || !values.equals(values(key))) {
+                    Key replacement = new Key(keyName);
+                    for (String value : values) {
+                        replacement.addValue(new Value(value));
+                    }
+                    header.addKey(replacement);
+                }
+            });
+        });
+
+        reverted.apply(irisBuilder);
+
+        return reverted;
+    }
+
+    /**
+     * Pins the current version, so it is retained until the pin is closed.
+     *
+     * @return The pin.
+     * @throws IllegalStateException If nothing was committed yet.
+     */
+    public synchronized Pin pin() {
+
+        if (current == null) {
+            throw new IllegalStateException("no version committed");
+        }
+
+        return pin(current);
+    }
+
+    /**
+     * Pins the given version, so it is retained until the pin is closed.
+     *
+     * @param number The number of the version.
+     * @return The pin.
+     * @throws IllegalArgumentException If the version is not retained.
+     */
+    public synchronized Pin pin(long number) {
+
+        Version version = getVersion(number);
+        if (version == null) {
+            throw new IllegalArgumentException("version " + number + " is not retained");
+        }
+
+        return pin(version);
+    }
+
+    private Pin pin(Version version) {
+
+        pins.merge(version, 1, Integer::sum);
+
+        return new Pin(version);
+    }
+
+    private synchronized void unpin(Version version) {
+
+        if (pins.merge(version, -1, Integer::sum) == 0) {
+            pins.remove(version);
+            evict();
+        }
+    }
+
+    /**
+     * Returns the current config.
+     *
+     * @return The current config or null if nothing was committed yet.
+     */
+    public IrisConfig getConfig() {
+
+        return config;
+    }
+
+    /**
+     * Returns the current version.
+     *
+     * @return The current version or null if nothing was committed yet.
+     */
+    public Version getCurrent() {
+
+        return current;
+    }
+
+    /**
+     * Returns the version with the given number.
+     *
+     * @param number The number of the version.
+     * @return The version or null if it is not retained.
+     */
+    public synchronized Version getVersion(long number) {
+
+        for (Version version : versions) {
+            if (version.number == number) {
+                return version;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the retained versions, oldest first.
+     *
+     * @return The versions as an unmodifiable list.
+     */
+    public synchronized List<Version> getVersions() {
+
+        return Collections.unmodifiableList(new ArrayList<>(versions));
+    }
+
+    /**
+     * Returns the number of source bytes which the retained versions keep.
+     *
+     * The whole source is only kept for the current version and is the source of the current config,
+     * the other versions add the bytes in which their sources differ.
+     *
+     * @return The number of bytes.
+     */
+    public synchronized long getSourceSize() {
+
+        Set<Source> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+        long size = 0;
+        for (Version version : versions) {
+            for (Source source = version.source; source != null && counted.add(source); source = source.next) {
+                size += source.bytes.length;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * An immutable version of a config.
+     */
+    public static final class Version {
+
+        private final long number;
+
+        private final long timestamp;
+
+        /**
+         * The raw values by key name by header name, inherited keys are only stored at the header which defines them.
+         */
+        private final PersistentMap<String, PersistentMap<String, List<String>>> headers;
+
+        private final File file;
+
+        /**
+         * The source of the committed config, shared with the other versions of the same content.
+         */
+        private final Source source;
+
+        private final boolean compressed;
+
+        private Version(long number, long timestamp, PersistentMap<String, PersistentMap<String, List<String>>> headers, File file, Source source, boolean compressed) {
+
+            this.number = number;
+            this.timestamp = timestamp;
+            this.headers = headers;
+            this.file = file;
+            this.source = source;
+            this.compressed = compressed;
+        }
+
+        /**
+         * Returns the number of this version, starting at 1.
+         *
+         * @return The version number.
+         */
+        public long getNumber() {
+
+            return number;
+        }
+
+        /**
+         * Returns the time this version was committed.
+         *
+         * @return The time in milliseconds since the epoch.
+         */
+        public long getTimestamp() {
+
+            return timestamp;
+        }
+
+        /**
+         * Returns whether the given header exists in this version.
+         *
+         * @param header The name of the header.
+         * @return True if the header exists.
+         */
+        public boolean hasHeader(String header) {
+
+            return headers.containsKey(header);
+        }
+
+        /**
+         * Returns the raw values of the given key, an inherited key is only found at the header which defines it.
+         *
+         * @param header The name of the header.
+         * @param key The name of the key.
+         * @return The values as an unmodifiable list or null if the key does not exist.
+         */
+        public List<String> getValues(String header, String key) {
+
+            PersistentMap<String, List<String>> keys = headers.get(header);
+
+            return keys != null ? keys.get(key) : null;
+        }
+
+        /**
+         * Returns the names of the headers, sorted.
+         *
+         * @return The header names.
+         */
+        public List<String> getHeaderNames() {
+
+            List<String> names = new ArrayList<>(headers.size());
+            headers.forEach((name, keys) -> names.add(name));
+            Collections.sort(names);
+
+            return names;
+        }
+
+        /**
+         * Returns the names of the keys which the given header defines itself, sorted.
+         *
+         * @param header The name of the header.
+         * @return The key names, empty if the header does not exist.
+         */
+        public List<String> getKeyNames(String header) {
+
+            List<String> names = new ArrayList<>();
+            PersistentMap<String, List<String>> keys = headers.get(header);
+            if (keys != null) {
+                keys.forEach((name, values) -> names.add(name));
+                Collections.sort(names);
+            }
+
+            return names;
+        }
+
+        /**
+         * Returns the changes from this version to the given version.
+         *
+         * Headers and keys which both versions share are skipped, so the cost depends on the number of changes.
+         *
+         * @param other The other version.
+         * @return The changed keys, sorted by header and key name.
+         */
+        public List<Change> diff(Version other) {
+
+            List<Change> changes = new ArrayList<>();
+            headers.diff(other.headers, (header, from, to) -> {
+                PersistentMap<String, List<String>> fromKeys = from != null ? from : PersistentMap.empty();
+                PersistentMap<String, List<String>> toKeys = to != null ? to : PersistentMap.empty();
+                fromKeys.diff(toKeys, (key, fromValues, toValues) -> changes.add(new Change(header, key, fromValues, toValues)));
+            });
+            changes.sort(Comparator.comparing(Change::getHeader).thenComparing(Change::getKey));
+
+            return changes;
+        }
+
+        @Override
+        public String toString() {
+
+            return "Version{number=" + number + ", timestamp=" + timestamp + "}";
+        }
+    }
+
+    /**
+     * A key which was added, removed or changed between two versions.
+     */
+    public static final class Change {
+
+        private final String header;
+
+        private final String key;
+
+        private final List<String> from;
+
+        private final List<String> to;
+
+        private Change(String header, String key, List<String> from, List<String> to) {
+
+            this.header = header;
+            this.key = key;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Returns the name of the header.
+         *
+         * @return The header name.
+         */
+        public String getHeader() {
+
+            return header;
+        }
+
+        /**
+         * Returns the name of the key.
+         *
+         * @return The key name.
+         */
+        public String getKey() {
+
+            return key;
+        }
+
+        /**
+         * Returns the raw values in the old version.
+         *
+         * @return The old values or null if the key was added.
+         */
+        public List<String> getFrom() {
+
+            return from;
+        }
+
+        /**
+         * Returns the raw values in the new version.
+         *
+         * @return The new values or null if the key was removed.
+         */
+        public List<String> getTo() {
+
+            return to;
+        }
+
+        @Override
+        public String toString() {
+
+            return header + "." + key + ": " + from + " -> " + to;
+        }
+    }
+
+    /**
+     * Keeps a version retained while a request uses it.
+     */
+    public final class Pin implements AutoCloseable {
+
+        private final Version version;
+
+        private boolean closed;
+
+        private Pin(Version version) {
+
+            this.version = version;
+        }
+
+        /**
+         * Returns the pinned version.
+         *
+         * @return The version.
+         */
+        public Version getVersion() {
+
+            return version;
+        }
+
+        /**
+         * Releases the version, it can be evicted afterwards.
+         */
+        @Override
+        public void close() {
+
+            synchronized (IrisHistory.this) {
+                if (!closed) {
+                    closed = true;
+                    unpin(version);
+                }
+            }
+        }
+    }
+
+    /**
+     * The source of one or more versions.
+     *
+     * A source is kept whole until a newer source is committed, afterwards it only keeps the range
+     * between the common prefix and the common suffix with the newer source.
+     */
+    private static final class Source {
+
+        private byte[] bytes;
+
+        /**
+         * The newer source which this source differs from, or null if the bytes are the whole source.
+         */
+        private Source next;
+
+        private int prefix;
+
+        private int suffix;
+
+        private Source(byte[] bytes) {
+
+            this.bytes = bytes;
+        }
+
+        /**
+         * Keeps only the bytes which differ from the given whole source.
+         */
+        private void diff(Source newer) {
+
+            byte[] other = newer.bytes;
+            int length = Math.min(bytes.length, other.length);
+
+            int prefix = 0;
+            while (prefix < length && bytes[prefix] == other[prefix]) {
+                prefix++;
+            }
+            int suffix = 0;
+            while (suffix < length - prefix && bytes[bytes.length - 1 - suffix] == other[other.length - 1 - suffix]) {
+                suffix++;
+            }
+
+            this.bytes = Arrays.copyOfRange(bytes, prefix, bytes.length - suffix);
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.next = newer;
+        }
+
+        /**
+         * Restores the whole source from the newer sources.
+         */
+        private byte[] toBytes() {
+
+            Deque<Source> older = new ArrayDeque<>();
+            Source source = this;
+            for (; source.next != null; source = source.next) {
+                older.push(source);
+            }
+
+            byte[] result = source.bytes;
+            while (!older.isEmpty()) {
+                source = older.pop();
+                byte[] bytes = new byte[source.prefix + source.bytes.length + source.suffix];
+                System.arraycopy(result, 0, bytes, 0, source.prefix);
+                System.arraycopy(source.bytes, 0, bytes, source.prefix, source.bytes.length);
+                System.arraycopy(result, result.length - source.suffix, bytes, bytes.length - source.suffix, source.suffix);
+                result = bytes;
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * The values of a key at the time it was committed.
+     */
+    private static final class Stamp {
+
+        private final int modCount;
+
+        private final List<String> values;
+
+        private Stamp(int modCount, List<String> values) {
+
+            this.modCount = modCount;
+            this.values = values;
+        }
+    }
+}
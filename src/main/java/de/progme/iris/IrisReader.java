@@ -0,0 +1,465 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris;
+
+import de.progme.iris.exception.IrisInvalidConfigException;
+import de.progme.iris.io.ByteScanner;
+import de.progme.iris.io.ConfigFiles;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A pull parser which reads a config event by event without building a model.
+ *
+ * Every header, key and value is one event. A stream is read through one buffer which only grows
+ * for a line longer than the buffer, so the memory does not depend on the size of the config.
+ * The text of the current event is only valid until the next call of {@link #next()}.
+ *
+ * <pre>
+ * try (IrisReader reader = IrisReader.open(file)) {
+ *     IrisReader.Event event;
+ *     while ((event = reader.next()) != null) {
+ *         if (event == IrisReader.Event.KEY) {
+ *             keys++;
+ *         }
+ *     }
+ * }
+ * </pre>
+ */
+public final class IrisReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The stream or null if the reader reads an array.
+     */
+    private final InputStream in;
+
+    private byte[] buffer;
+
+    /**
+     * Finds line terminators and separators in the buffer eight bytes at a time.
+     */
+    private ByteScanner scanner;
+
+    /**
+     * The end of the valid bytes in the buffer.
+     */
+    private int limit;
+
+    /**
+     * The start of the bytes which are not read yet.
+     */
+    private int position;
+
+    private boolean endOfStream;
+
+    /**
+     * Whether the last line ended with a \r, so a following \n belongs to it.
+     */
+    private boolean skipLineFeed;
+
+    private int lineStart;
+
+    private int lineEnd;
+
+    private int lineNumber;
+
+    private boolean headerSeen;
+
+    /**
+     * Whether the lines up to the next header are skipped.
+     */
+    private boolean skipping;
+
+    private Event event;
+
+    private int textStart;
+
+    private int textEnd;
+
+    private int parentStart = -1;
+
+    private int parentEnd;
+
+    /**
+     * The end of the values of the current key and the end of the last token.
+     */
+    private int keyEnd;
+
+    private int tokenEnd;
+
+    /**
+     * Creates a new reader which reads the given stream.
+     *
+     * @param in The stream.
+     */
+    public IrisReader(InputStream in) {
+
+        this.in = in;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.scanner = new ByteScanner(buffer);
+    }
+
+    /**
+     * Creates a new reader which reads the given content without copying it.
+     *
+     * @param source The content of a config.
+     */
+    public IrisReader(byte[] source) {
+
+        this.in = null;
+        this.buffer = source;
+        this.scanner = new ByteScanner(source);
+        this.limit = source.length;
+        this.endOfStream = true;
+    }
+
+    /**
+     * Opens a reader for the given file, which is inflated if it is gzip compressed.
+     *
+     * @param file The config file.
+     * @return The reader.
+     * @throws IOException If the file could not be opened.
+     */
+    public static IrisReader open(File file) throws IOException {
+
+        return new IrisReader(ConfigFiles.newInputStream(file));
+    }
+
+    /**
+     * Reads the next event.
+     *
+     * @return The event or null at the end of the config.
+     * @throws IOException If the stream could not be read.
+     * @throws IrisInvalidConfigException If a key comes before the first header.
+     */
+    public Event next() throws IOException, IrisInvalidConfigException {
+
+        if ((event == Event.KEY || event == Event.VALUE) && tokenEnd < keyEnd) {
+            textStart = tokenEnd + 1;
+            textEnd = tokenEnd = indexOf(' ', textStart, keyEnd);
+
+            return event = Event.VALUE;
+        }
+
+        while (readLine()) {
+            int start = lineStart;
+            int end = lineEnd;
+            if (end == start || buffer[start] == '#') {
+                continue;
+            }
+
+            if (skipping) {
+                // Only the last byte tells whether the line is a header
+                int last = end;
+                while (last > start && (buffer[last - 1] & 0xFF) <= ' ') {
+                    last--;
+                }
+                if (last == start || buffer[last - 1] != ':') {
+                    continue;
+                }
+                skipping = false;
+            }
+
+            while (start < end && (buffer[start] & 0xFF) <= ' ') {
+                start++;
+            }
+            while (end > start && (buffer[end - 1] & 0xFF) <= ' ') {
+                end--;
+            }
+
+            if (end > start && buffer[end - 1] == ':') {
+                int separator = indexOf('<', start, end - 1);
+                text(start, separator);
+                if (separator < end - 1) {
+                    parentStart = trimStart(separator + 1, end - 1);
+                    parentEnd = trimEnd(parentStart, end - 1);
+                } else {
+                    parentStart = -1;
+                }
+                headerSeen = true;
+
+                return event = Event.HEADER;
+            }
+
+            if (!headerSeen) {
+                throw new IrisInvalidConfigException("line " + lineNumber + ": at least one header at the top is needed", lineNumber);
+            }
+
+            textStart = start;
+            textEnd = tokenEnd = indexOf(' ', start, end);
+            keyEnd = end;
+
+            return event = Event.KEY;
+        }
+
+        return event = null;
+    }
+
+    /**
+     * Skips the rest of the current header, the next call of {@link #next()} returns the next header.
+     *
+     * The skipped lines are only checked for a trailing colon, their keys and values are not tokenized.
+     */
+    public void skipHeader() {
+
+        skipping = true;
+        keyEnd = tokenEnd;
+    }
+
+    /**
+     * Returns the current event.
+     *
+     * @return The event or null before the first and after the last event.
+     */
+    public Event getEvent() {
+
+        return event;
+    }
+
+    /**
+     * Returns the line of the current event, starting at 1.
+     *
+     * @return The line number.
+     */
+    public int getLine() {
+
+        return lineNumber;
+    }
+
+    /**
+     * Returns the name of the current header or key or the current value.
+     *
+     * @return The text of the current event.
+     */
+    public String getText() {
+
+        return new String(buffer, textStart, textEnd - textStart, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns whether the text of the current event is the given string, without creating a string.
+     *
+     * @param text The string, which is compared as ascii if it only contains ascii characters.
+     * @return True if the text of the current event is the string.
+     */
+    public boolean isText(String text) {
+
+        int length = textEnd - textStart;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return getText().equals(text);
+            }
+        }
+        if (length != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer[textStart + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the name of the header the current header inherits from.
+     *
+     * @return The name of the parent or null if the current event is no inheriting header.
+     */
+    public String getParent() {
+
+        if (event != Event.HEADER || parentStart == -1) {
+            return null;
+        }
+
+        return new String(buffer, parentStart, parentEnd - parentStart, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the offset of the text of the current event in the source array.
+     */
+    int offset() {
+
+        return textStart;
+    }
+
+    /**
+     * Returns the length of the text of the current event in bytes.
+     */
+    int length() {
+
+        return textEnd - textStart;
+    }
+
+    /**
+     * Closes the stream.
+     *
+     * @throws IOException If the stream could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads the next line into the buffer.
+     *
+     * @return False at the end of the config.
+     */
+    private boolean readLine() throws IOException {
+
+        while (skipLineFeed) {
+            if (position < limit) {
+                if (buffer[position] == '\n') {
+                    position++;
+                }
+                skipLineFeed = false;
+            } else if (!fill()) {
+                return false;
+            }
+        }
+
+        int end = position;
+        while (true) {
+            end = scanner.indexOfLineEnd(end, limit);
+            if (end < limit) {
+                break;
+            }
+
+            // The buffer is compacted while filling
+            int read = end - position;
+            boolean filled = fill();
+            end = position + read;
+            if (!filled) {
+                break;
+            }
+        }
+
+        if (end == position && end == limit) {
+            return false;
+        }
+
+        lineNumber++;
+        lineStart = position;
+        lineEnd = end;
+        if (end < limit) {
+            skipLineFeed = buffer[end] == '\r';
+            position = end + 1;
+        } else {
+            position = end;
+        }
+
+        return true;
+    }
+
+    /**
+     * Moves the unread bytes to the start of the buffer and reads more bytes.
+     *
+     * @return False at the end of the stream.
+     */
+    private boolean fill() throws IOException {
+
+        if (endOfStream) {
+            return false;
+        }
+
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            // The line is longer than the buffer
+            byte[] grown = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, limit);
+            buffer = grown;
+            scanner = new ByteScanner(grown);
+        }
+
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read == -1) {
+            endOfStream = true;
+            return false;
+        }
+        limit += read;
+
+        return true;
+    }
+
+    private void text(int start, int end) {
+
+        textStart = trimStart(start, end);
+        textEnd = trimEnd(textStart, end);
+    }
+
+    private int trimStart(int start, int end) {
+
+        while (start < end && (buffer[start] & 0xFF) <= ' ') {
+            start++;
+        }
+
+        return start;
+    }
+
+    private int trimEnd(int start, int end) {
+
+        while (end > start && (buffer[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+
+        return end;
+    }
+
+    private int indexOf(char c, int start, int end) {
+
+        return scanner.indexOf((byte) c, start, end);
+    }
+
+    /**
+     * The events of a config.
+     */
+    public enum Event {
+
+        /**
+         * A header, the text is its name.
+         */
+        HEADER,
+
+        /**
+         * A key, the text is its name. The values of the key follow as value events.
+         */
+        KEY,
+
+        /**
+         * A value of the current key.
+         */
+        VALUE
+    }
+}
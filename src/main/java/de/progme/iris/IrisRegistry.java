@@ -0,0 +1,506 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris;
+
+import de.progme.iris.exception.IrisException;
+import de.progme.iris.exception.IrisLoadConfigException;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A registry which shares parsed configs between all callers in a process.
+ *
+ * Configs are cached by their canonical path. A cached config is served as long as the size and
+ * the modification time of its file are the same; if they changed, the content hash decides whether
+ * the file has to be parsed again. A config is not cached if its file changed while it was loaded.
+ * Concurrent requests for the same file are collapsed into one load.
+ * Entries are evicted in least recently used order if the registry is full, and optionally as soon as
+ * no one references the config anymore.
+ *
+ * The cached configs are shared, so they should not be changed by the callers.
+ */
+public final class IrisRegistry {
+
+    /**
+     * The process wide registry.
+     */
+    private static final IrisRegistry SHARED = builder().build();
+
+    private final Loader loader;
+
+    private final int maximumSize;
+
+    private final boolean weakValues;
+
+    /**
+     * The entries in access order, guarded by itself.
+     */
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+
+    /**
+     * The loads in progress by path.
+     */
+    private final ConcurrentHashMap<Path, CompletableFuture<IrisConfig>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private IrisRegistry(RegistryBuilder builder) {
+
+        this.loader = builder.loader;
+        this.maximumSize = builder.maximumSize;
+        this.weakValues = builder.weakValues;
+    }
+
+    /**
+     * Returns the process wide registry, which keeps up to 64 configs.
+     *
+     * @return The shared registry.
+     */
+    public static IrisRegistry shared() {
+
+        return SHARED;
+    }
+
+    /**
+     * Creates a new registry builder.
+     *
+     * @return A new registry builder.
+     */
+    public static RegistryBuilder builder() {
+
+        return new RegistryBuilder();
+    }
+
+    /**
+     * Returns the config from the given file name or file path.
+     *
+     * @param file The file name or path.
+     * @return The shared config.
+     * @throws IrisException If something went wrong during loading or parsing.
+     */
+    public IrisConfig get(String file) throws IrisException {
+
+        return get(new File(file));
+    }
+
+    /**
+     * Returns the config from the given path.
+     *
+     * @param path The path.
+     * @return The shared config.
+     * @throws IrisException If something went wrong during loading or parsing.
+     */
+    public IrisConfig get(Path path) throws IrisException {
+
+        return get(path.toFile());
+    }
+
+    /**
+     * Returns the config from the given file, it is only parsed if it is not cached or if it changed.
+     *
+     * @param file The file.
+     * @return The shared config.
+     * @throws IrisException If something went wrong during loading or parsing.
+     */
+    public IrisConfig get(File file) throws IrisException {
+
+        Path path;
+        BasicFileAttributes attributes;
+        try {
+            path = file.getCanonicalFile().toPath();
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new IrisLoadConfigException("could not load config file '" + file.getName() + "'");
+        }
+
+        IrisConfig config = cached(path, attributes);
+        if (config != null) {
+            hits.increment();
+            return config;
+        }
+
+        CompletableFuture<IrisConfig> future = new CompletableFuture<>();
+        CompletableFuture<IrisConfig> running = loading.putIfAbsent(path, future);
+        if (running != null) {
+            // Another thread loads the same file already
+            hits.increment();
+            return await(running);
+        }
+
+        try {
+            config = load(path, attributes);
+            future.complete(config);
+
+            return config;
+        } catch (IrisException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(path, future);
+        }
+    }
+
+    /**
+     * Returns the cached config if its file did not change.
+     */
+    private IrisConfig cached(Path path, BasicFileAttributes attributes) {
+
+        synchronized (entries) {
+            Entry entry = entries.get(path);
+            if (entry == null) {
+                return null;
+            }
+
+            IrisConfig config = entry.config();
+            if (config == null) {
+                entries.remove(path);
+                evictions.increment();
+                return null;
+            }
+
+            return entry.size == attributes.size() && entry.modified == attributes.lastModifiedTime().toMillis() ? config : null;
+        }
+    }
+
+    private IrisConfig load(Path path, BasicFileAttributes attributes) throws IrisException {
+
+        // Checks again, the file could have been loaded while waiting for the loading slot
+        IrisConfig config = cached(path, attributes);
+        if (config != null) {
+            hits.increment();
+            return config;
+        }
+
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(path));
+        } catch (IOException e) {
+            throw new IrisLoadConfigException("could not load config file '" + path.getFileName() + "'");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(path);
+        }
+
+        config = entry != null && Arrays.equals(entry.hash, hash) ? entry.config() : null;
+        if (config != null) {
+            // Only the metadata changed, e.g. the file was touched or copied
+            hits.increment();
+        } else {
+            misses.increment();
+            config = loader.load(path.toFile());
+        }
+
+        // The loader reads the file again, so the hash only describes the parsed config if the file did not change meanwhile
+        BasicFileAttributes loaded;
+        try {
+            loaded = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return config;
+        }
+        if (loaded.size() != attributes.size() || !loaded.lastModifiedTime().equals(attributes.lastModifiedTime())) {
+            return config;
+        }
+
+        synchronized (entries) {
+            entries.put(path, new Entry(config, attributes.size(), attributes.lastModifiedTime().toMillis(), hash, weakValues));
+            evict();
+        }
+
+        return config;
+    }
+
+    /**
+     * Removes collected and least recently used entries, must be called while holding the lock.
+     */
+    private void evict() {
+
+        if (weakValues) {
+            for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+                if (iterator.next().config() == null) {
+                    iterator.remove();
+                    evictions.increment();
+                }
+            }
+        }
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maximumSize) {
+            iterator.next();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private static IrisConfig await(CompletableFuture<IrisConfig> future) throws IrisException {
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IrisLoadConfigException("interrupted while waiting for the config");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IrisException) {
+                throw (IrisException) e.getCause();
+            }
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    /**
+     * Removes the config of the given file from the registry.
+     *
+     * @param file The file.
+     */
+    public void invalidate(File file) {
+
+        try {
+            Path path = file.getCanonicalFile().toPath();
+            synchronized (entries) {
+                entries.remove(path);
+            }
+        } catch (IOException ignored) {
+            // A file without a canonical path can't be cached
+        }
+    }
+
+    /**
+     * Removes all configs from the registry.
+     */
+    public void invalidateAll() {
+
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns the number of cached configs.
+     *
+     * @return The number of cached configs.
+     */
+    public int size() {
+
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the statistics of this registry.
+     *
+     * @return A snapshot of the statistics.
+     */
+    public Stats getStats() {
+
+        return new Stats(hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    /**
+     * Loads a config from a file.
+     */
+    @FunctionalInterface
+    public interface Loader {
+
+        /**
+         * Loads the config from the given file.
+         *
+         * @param file The file.
+         * @return The config.
+         * @throws IrisException If something went wrong during loading or parsing.
+         */
+        IrisConfig load(File file) throws IrisException;
+    }
+
+    /**
+     * The statistics of a registry.
+     */
+    public static final class Stats {
+
+        private final long hitCount;
+
+        private final long missCount;
+
+        private final long evictionCount;
+
+        private Stats(long hitCount, long missCount, long evictionCount) {
+
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+        }
+
+        /**
+         * Returns the number of requests which were served without parsing the file.
+         *
+         * @return The number of hits.
+         */
+        public long getHitCount() {
+
+            return hitCount;
+        }
+
+        /**
+         * Returns the number of requests which parsed the file.
+         *
+         * @return The number of misses.
+         */
+        public long getMissCount() {
+
+            return missCount;
+        }
+
+        /**
+         * Returns the number of configs which were removed because the registry was full or they were collected.
+         *
+         * @return The number of evictions.
+         */
+        public long getEvictionCount() {
+
+            return evictionCount;
+        }
+
+        @Override
+        public String toString() {
+
+            return "Stats{hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + "}";
+        }
+    }
+
+    /**
+     * A cached config with the metadata of its file.
+     */
+    private static final class Entry {
+
+        private final IrisConfig strong;
+
+        private final WeakReference<IrisConfig> weak;
+
+        private final long size;
+
+        private final long modified;
+
+        private final byte[] hash;
+
+        private Entry(IrisConfig config, long size, long modified, byte[] hash, boolean weakValue) {
+
+            this.strong = weakValue ? null : config;
+            this.weak = weakValue ? new WeakReference<>(config) : null;
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+
+        private IrisConfig config() {
+
+            return strong != null ? strong : weak.get();
+        }
+    }
+
+    /**
+     * A builder to configure a registry.
+     */
+    public static class RegistryBuilder {
+
+        private Loader loader = file -> Iris.from(file).build();
+
+        private int maximumSize = 64;
+
+        private boolean weakValues;
+
+        private RegistryBuilder() {
+
+        }
+
+        /**
+         * Sets how configs are loaded, e.g. to add defaults or to freeze them.
+         *
+         * @param loader The loader.
+         * @return This registry builder.
+         */
+        public RegistryBuilder loader(Loader loader) {
+
+            this.loader = loader;
+
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of cached configs, the least recently used config is evicted first.
+         *
+         * @param maximumSize The maximum number of configs.
+         * @return This registry builder.
+         */
+        public RegistryBuilder maximumSize(int maximumSize) {
+
+            if (maximumSize < 0) {
+                throw new IllegalArgumentException("maximumSize must not be negative");
+            }
+
+            this.maximumSize = maximumSize;
+
+            return this;
+        }
+
+        /**
+         * Only references the configs weakly, so they are evicted as soon as no one uses them.
+         *
+         * @return This registry builder.
+         */
+        public RegistryBuilder weakValues() {
+
+            this.weakValues = true;
+
+            return this;
+        }
+
+        /**
+         * Builds the registry.
+         *
+         * @return The registry.
+         */
+        public IrisRegistry build() {
+
+            return new IrisRegistry(this);
+        }
+    }
+}
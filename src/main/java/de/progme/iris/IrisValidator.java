@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris;
+
+import de.progme.iris.exception.IrisException;
+import de.progme.iris.exception.IrisInvalidConfigException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Validates many config files in parallel from the command line.
+ *
+ * <pre>
+ * java -jar iris.jar [--threads n] [--pattern glob] [--interpolate] &lt;file or directory&gt;...
+ * </pre>
+ *
+ * Directories are walked recursively and every file matching the pattern is parsed on a shared
+ * thread pool. Every invalid file is reported as file:line: message, followed by timing statistics.
+ * The exit code is 0 if all files are valid, 1 if a file is invalid and 2 for wrong arguments.
+ */
+public final class IrisValidator {
+
+    private static final String DEFAULT_PATTERN = "*.{cp,cop,cp.gz,cop.gz}";
+
+    private IrisValidator() {
+
+        throw new UnsupportedOperationException();
+    }
+
+    public static void main(String[] args) {
+
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Validates the files and directories from the given arguments.
+     *
+     * @param args The arguments.
+     * @param out The stream for the statistics.
+     * @param err The stream for the errors.
+     * @return The exit code.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        String pattern = DEFAULT_PATTERN;
+        boolean interpolate = false;
+        List<Path> roots = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    if (i + 1 == args.length) {
+                        return usage(err);
+                    }
+                    try {
+                        threads = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        return usage(err);
+                    }
+                    if (threads < 1) {
+                        return usage(err);
+                    }
+                    break;
+                case "--pattern":
+                    if (i + 1 == args.length) {
+                        return usage(err);
+                    }
+                    pattern = args[++i];
+                    break;
+                case "--interpolate":
+                    interpolate = true;
+                    break;
+                default:
+                    if (args[i].startsWith("--")) {
+                        return usage(err);
+                    }
+                    roots.add(Paths.get(args[i]));
+            }
+        }
+
+        if (roots.isEmpty()) {
+            return usage(err);
+        }
+
+        long start = System.nanoTime();
+
+        List<Path> files;
+        try {
+            files = collect(roots, FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+        } catch (IOException | IllegalArgumentException e) {
+            err.println("could not list files: " + e.getMessage());
+            return 2;
+        }
+
+        List<Result> results = new ArrayList<>(files.size());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(files.size(), 1)));
+        try {
+            List<Future<Result>> futures = new ArrayList<>(files.size());
+            for (Path file : files) {
+                boolean references = interpolate;
+                futures.add(executor.submit(() -> validate(file, references)));
+            }
+            for (Future<Result> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 2;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long elapsed = System.nanoTime() - start;
+
+        int invalid = 0;
+        long bytes = 0;
+        long parseTime = 0;
+        Result slowest = null;
+        for (Result result : results) {
+            if (result.error != null) {
+                invalid++;
+                err.println(result.error);
+            }
+            bytes += result.size;
+            parseTime += result.time;
+            if (slowest == null || result.time > slowest.time) {
+                slowest = result;
+            }
+        }
+
+        out.println(String.format(Locale.ROOT, "%d files (%.1f KiB) validated in %.2f s with %d threads, %d invalid",
+                results.size(), bytes / 1024.0, elapsed / 1e9, threads, invalid));
+        if (slowest != null) {
+            out.println(String.format(Locale.ROOT, "parse time: total %.2f s, average %.3f ms, slowest %.3f ms (%s)",
+                    parseTime / 1e9, parseTime / 1e6 / results.size(), slowest.time / 1e6, slowest.file));
+        }
+
+        return invalid == 0 ? 0 : 1;
+    }
+
+    /**
+     * Returns the matching files below the given roots in a stable order, files given directly always match.
+     */
+    private static List<Path> collect(List<Path> roots, PathMatcher matcher) throws IOException {
+
+        List<Path> files = new ArrayList<>();
+        for (Path root : roots) {
+            if (!Files.isDirectory(root)) {
+                files.add(root);
+                continue;
+            }
+
+            List<Path> found = new ArrayList<>();
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+
+                    if (attributes.isRegularFile() && matcher.matches(file.getFileName())) {
+                        found.add(file);
+                    }
+
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            found.sort(null);
+            files.addAll(found);
+        }
+
+        return files;
+    }
+
+    private static Result validate(Path path, boolean interpolate) {
+
+        File file = path.toFile();
+        long start = System.nanoTime();
+        String error = null;
+        try {
+            Iris.IrisBuilder builder = Iris.from(file);
+            if (interpolate) {
+                builder.interpolate();
+            }
+            builder.build();
+        } catch (IrisInvalidConfigException e) {
+            error = e.getLine() > 0 ? path + ":" + e.getLine() + ": " + withoutLine(e.getMessage(), e.getLine()) : path + ": " + e.getMessage();
+        } catch (IrisException e) {
+            error = path + ": " + e.getMessage();
+        } catch (RuntimeException e) {
+            error = path + ": unexpected error: " + e;
+        }
+
+        return new Result(path, file.length(), System.nanoTime() - start, error);
+    }
+
+    /**
+     * Removes the line prefix of a message, the line is reported in front of it.
+     */
+    private static String withoutLine(String message, int line) {
+
+        String prefix = "line " + line + ": ";
+
+        return message.startsWith(prefix) ? message.substring(prefix.length()) : message;
+    }
+
+    private static int usage(PrintStream err) {
+
+        err.println("usage: java -jar iris.jar [--threads n] [--pattern glob] [--interpolate] <file or directory>...");
+
+        return 2;
+    }
+
+    /**
+     * The result of validating a single file.
+     */
+    private static final class Result {
+
+        private final Path file;
+
+        private final long size;
+
+        private final long time;
+
+        /**
+         * The error or null if the file is valid.
+         */
+        private final String error;
+
+        private Result(Path file, long size, long time, String error) {
+
+            this.file = file;
+            this.size = size;
+            this.time = time;
+            this.error = error;
+        }
+    }
+}
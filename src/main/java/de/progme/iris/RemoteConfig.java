@@ -0,0 +1,397 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris;
+
+import de.progme.iris.exception.IrisException;
+import de.progme.iris.exception.IrisLoadConfigException;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A config which is loaded from an http or https uri.
+ *
+ * Every download is stored in a local cache directory together with its ETag and Last-Modified
+ * headers, which are sent again on the next request so an unchanged config costs a 304 response.
+ * If the origin can't be reached, the last good copy from the cache is served. A downloaded config
+ * is only parsed if its content changed and only replaces the cached copy if it could be parsed.
+ */
+public final class RemoteConfig implements Closeable {
+
+    private static final int TIMEOUT = 10000;
+
+    private final URI uri;
+
+    private final Iris.IrisBuilder builder;
+
+    private final File directory;
+
+    /**
+     * The last good copy of the config.
+     */
+    private final File file;
+
+    /**
+     * The validators and the content hash of the last good copy.
+     */
+    private final File metadata;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile IrisConfig config;
+
+    private String etag;
+
+    private String lastModified;
+
+    /**
+     * The hex encoded SHA-256 hash of the last good copy.
+     */
+    private String hash;
+
+    private ScheduledExecutorService poller;
+
+    /**
+     * Creates a new remote config and loads it from the uri or from the cache.
+     *
+     * @param uri The http or https uri.
+     * @param builder The builder which builds every loaded config.
+     * @param directory The cache directory.
+     * @throws IrisException If the config could neither be downloaded nor loaded from the cache.
+     */
+    RemoteConfig(URI uri, Iris.IrisBuilder builder, File directory) throws IrisException {
+
+        this.uri = uri;
+        this.builder = builder;
+        this.directory = directory;
+
+        String name = toHex(sha256(uri.toString().getBytes(StandardCharsets.UTF_8)));
+        this.file = new File(directory, name + ".cp");
+        this.metadata = new File(directory, name + ".properties");
+
+        readMetadata();
+        refresh();
+    }
+
+    /**
+     * Returns the current config.
+     *
+     * @return The current config.
+     */
+    public IrisConfig get() {
+
+        return config;
+    }
+
+    /**
+     * Returns the uri of the config.
+     *
+     * @return The uri.
+     */
+    public URI getUri() {
+
+        return uri;
+    }
+
+    /**
+     * Returns the file with the last good copy of the config.
+     *
+     * @return The cached file.
+     */
+    public File getCacheFile() {
+
+        return file;
+    }
+
+    /**
+     * Revalidates the config with the origin and parses it again if its content changed.
+     *
+     * If the origin can't be reached, the current config or the last good copy is kept.
+     *
+     * @return True if a new config was parsed.
+     * @throws IrisException If no config is available or the downloaded config is invalid.
+     */
+    public synchronized boolean refresh() throws IrisException {
+
+        byte[] content;
+        try {
+            content = download();
+        } catch (IOException e) {
+            if (config == null) {
+                if (!file.isFile()) {
+                    throw new IrisLoadConfigException("could not load config '" + uri + "'");
+                }
+                // The origin is down, serve the last good copy
+                config = builder.build(file);
+                return true;
+            }
+
+            return false;
+        }
+
+        if (content == null) {
+            // Not modified, the cached copy is still valid
+            if (config == null) {
+                config = builder.build(file);
+                return true;
+            }
+
+            return false;
+        }
+
+        String contentHash = toHex(sha256(content));
+        if (config != null && contentHash.equals(hash)) {
+            // Only the validators changed
+            try {
+                writeMetadata();
+            } catch (IOException ignored) {
+                // The old validators only cost a full download next time
+            }
+            return false;
+        }
+
+        IrisConfig previous = config;
+        try {
+            File temporary = File.createTempFile("iris", ".tmp", directory);
+            try {
+                Files.write(temporary.toPath(), content);
+                IrisConfig loaded = builder.build(temporary);
+
+                Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                loaded.relocate(file);
+                hash = contentHash;
+                writeMetadata();
+                config = loaded;
+            } finally {
+                Files.deleteIfExists(temporary.toPath());
+            }
+        } catch (IOException e) {
+            throw new IrisLoadConfigException("could not cache config '" + uri + "'");
+        }
+
+        if (previous != null) {
+            for (Listener listener : listeners) {
+                listener.configChanged(previous, config);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Downloads the config, sending the validators of the cached copy.
+     *
+     * @return The content or null if it was not modified.
+     */
+    private byte[] download() throws IOException {
+
+        HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+        try {
+            connection.setConnectTimeout(TIMEOUT);
+            connection.setReadTimeout(TIMEOUT);
+            connection.setUseCaches(false);
+            if (file.isFile()) {
+                if (etag != null) {
+                    connection.setRequestProperty("If-None-Match", etag);
+                }
+                if (lastModified != null) {
+                    connection.setRequestProperty("If-Modified-Since", lastModified);
+                }
+            }
+
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && file.isFile()) {
+                return null;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("unexpected status " + status);
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(connection.getContentLength(), 8192));
+            try (InputStream in = connection.getInputStream()) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            etag = connection.getHeaderField("ETag");
+            lastModified = connection.getHeaderField("Last-Modified");
+
+            return out.toByteArray();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void readMetadata() {
+
+        if (!metadata.isFile() || !file.isFile()) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(metadata)) {
+            properties.load(in);
+        } catch (IOException e) {
+            // Without validators the config is downloaded again
+            return;
+        }
+
+        etag = properties.getProperty("etag");
+        lastModified = properties.getProperty("last-modified");
+        hash = properties.getProperty("sha-256");
+    }
+
+    private void writeMetadata() throws IOException {
+
+        Properties properties = new Properties();
+        properties.setProperty("uri", uri.toString());
+        if (etag != null) {
+            properties.setProperty("etag", etag);
+        }
+        if (lastModified != null) {
+            properties.setProperty("last-modified", lastModified);
+        }
+        if (hash != null) {
+            properties.setProperty("sha-256", hash);
+        }
+
+        File temporary = File.createTempFile("iris", ".tmp", directory);
+        try {
+            try (OutputStream out = new FileOutputStream(temporary)) {
+                properties.store(out, null);
+            }
+            Files.move(temporary.toPath(), metadata.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary.toPath());
+        }
+    }
+
+    /**
+     * Revalidates the config in the background with the given delay between two requests.
+     *
+     * Failed requests are ignored, the current config is kept until the origin answers again.
+     *
+     * @param delay The delay between two requests.
+     * @param unit The unit of the delay.
+     * @return This remote config.
+     */
+    public synchronized RemoteConfig poll(long delay, TimeUnit unit) {
+
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "iris-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (IrisException | RuntimeException ignored) {
+                // Keeps the current config
+            }
+        }, delay, delay, unit);
+
+        return this;
+    }
+
+    /**
+     * Adds a listener which is called after a changed config was parsed.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(Listener listener) {
+
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes the given listener.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(Listener listener) {
+
+        listeners.remove(listener);
+    }
+
+    /**
+     * Stops the background polling.
+     */
+    @Override
+    public synchronized void close() {
+
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Listens for changes of a remote config.
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * Called after a changed config was downloaded and parsed.
+         *
+         * @param previous The previous config.
+         * @param config The new config.
+         */
+        void configChanged(IrisConfig previous, IrisConfig config);
+    }
+}
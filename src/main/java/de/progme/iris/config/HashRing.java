@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.config;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A consistent hash ring over the values of a key.
+ *
+ * Every value owns a number of points on the ring which only depend on the value itself, so adding
+ * or removing a value only moves the hashes next to its own points. A hash is routed to the owner of
+ * the first point at or after it, which is a binary search over a sorted primitive array.
+ */
+final class HashRing {
+
+    /**
+     * The number of points per unit of weight, more points spread the hashes more evenly.
+     */
+    static final int POINTS_PER_WEIGHT = 100;
+
+    /**
+     * The versions of the key and of the weights key this ring was built for.
+     */
+    final int version;
+
+    final Key weights;
+
+    final int weightsVersion;
+
+    private final long[] points;
+
+    private final Value[] owners;
+
+    HashRing(List<Value> values, int version, Key weights) {
+
+        this.version = version;
+        this.weights = weights;
+        this.weightsVersion = weights != null ? weights.version() : 0;
+
+        List<Value> weightValues = weights != null ? weights.getValues() : null;
+        int[] counts = new int[values.size()];
+        int total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            int weight = weightValues != null && i < weightValues.size() ? weightValues.get(i).asInt() : 1;
+            if (weight < 0) {
+                throw new IllegalArgumentException("weight of value " + i + " is negative");
+            }
+            counts[i] = weight * POINTS_PER_WEIGHT;
+            total += counts[i];
+        }
+
+        long[] unsorted = new long[total];
+        int[] owner = new int[total];
+        int point = 0;
+        for (int i = 0; i < counts.length; i++) {
+            long base = hash(values.get(i).asString());
+            for (int replica = 0; replica < counts[i]; replica++) {
+                unsorted[point] = mix(base + replica * 0x9E3779B97F4A7C15L);
+                owner[point++] = i;
+            }
+        }
+
+        Integer[] order = new Integer[total];
+        for (int i = 0; i < total; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(unsorted[a], unsorted[b]));
+
+        this.points = new long[total];
+        this.owners = new Value[total];
+        for (int i = 0; i < total; i++) {
+            points[i] = unsorted[order[i]];
+            owners[i] = values.get(owner[order[i]]);
+        }
+    }
+
+    /**
+     * Returns the value which owns the given hash.
+     *
+     * @param hash The hash, which is mixed first so sequential ids spread over the ring.
+     * @return The value or null if the ring is empty.
+     */
+    Value route(long hash) {
+
+        if (points.length == 0) {
+            return null;
+        }
+
+        long target = mix(hash);
+        int low = 0;
+        int high = points.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (points[middle] < target) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        // Hashes after the last point wrap around to the first one
+        return owners[low == points.length ? 0 : low];
+    }
+
+    /**
+     * Returns the 64 bit FNV-1a hash of the given string.
+     */
+    private static long hash(String string) {
+
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < string.length(); i++) {
+            hash = (hash ^ string.charAt(i)) * 0x100000001B3L;
+        }
+
+        return hash;
+    }
+
+    /**
+     * The finalizer of SplitMix64, which spreads every input bit over the whole output.
+     */
+    private static long mix(long hash) {
+
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+
+        return hash ^ (hash >>> 31);
+    }
+}
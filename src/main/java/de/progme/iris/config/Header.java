@@ -19,6 +19,9 @@
 
 package de.progme.iris.config;
 
+import de.progme.iris.index.NameIndex;
+import de.progme.iris.index.PerfectHashMap;
+
 import java.util.*;
 
 /**
@@ -36,6 +39,26 @@ public class Header {
      */
     private Map<String, Key> keys = new HashMap<>();
 
+    /**
+     * The line of the header in the config file or 0 if it was not loaded from a file.
+     */
+    private int line;
+
+    /**
+     * The sorted index of the keys which is built on the first prefix or glob query.
+     */
+    private NameIndex<Key> index;
+
+    /**
+     * The header whose keys this header inherits or null.
+     */
+    private Header parent;
+
+    /**
+     * The listeners which get notified if a key is added or null if there are none.
+     */
+    private List<HeaderListener> listeners;
+
     /**
      * Creates a new header with the given name.
      *
@@ -46,6 +69,18 @@ public class Header {
         this.name = name;
     }
 
+    /**
+     * Creates a new header with the given name and the line it was defined in.
+     *
+     * @param name The name of the header.
+     * @param line The line of the header in the config file.
+     */
+    public Header(String name, int line) {
+
+        this.name = name;
+        this.line = line;
+    }
+
     /**
      * Adds a key to this header.
      *
@@ -53,7 +88,143 @@ public class Header {
      */
     public void addKey(Key key) {
 
-        keys.put(key.getName(), key);
+        if (isFrozen()) {
+            throw new UnsupportedOperationException("header '" + name + "' is frozen");
+        }
+
+        Key replaced = keys.put(key.getName(), key);
+        index = null;
+
+        if (listeners != null) {
+            for (HeaderListener listener : listeners) {
+                listener.keyAdded(this, key, replaced);
+            }
+        }
+    }
+
+    /**
+     * Inherits the keys of the given header which this header does not define itself.
+     *
+     * The inherited keys are shared with the parent and not copied, so the keys of this header
+     * stay a flat map and changing an inherited key changes it for the parent and all its children.
+     * The parent has to inherit its own keys first.
+     *
+     * @param parent The parent header.
+     */
+    public void inherit(Header parent) {
+
+        this.parent = parent;
+
+        for (Key key : parent.getKeys()) {
+            if (!keys.containsKey(key.getName())) {
+                addKey(key);
+            }
+        }
+    }
+
+    /**
+     * Returns the header whose keys this header inherits.
+     *
+     * @return The parent header or null if this header does not inherit.
+     */
+    public Header getParent() {
+
+        return parent;
+    }
+
+    /**
+     * Returns whether the given key of this header is inherited from the parent.
+     *
+     * @param key The key.
+     * @return True if the key is the one of the parent header.
+     */
+    public boolean isInherited(Key key) {
+
+        return parent != null && parent.getKey(key.getName()) == key;
+    }
+
+    /**
+     * Adds a listener which gets notified if a key is added to this header.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(HeaderListener listener) {
+
+        if (listeners == null) {
+            listeners = new ArrayList<>(1);
+        }
+
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(HeaderListener listener) {
+
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Returns the keys whose names start with the given prefix, sorted by their name.
+     *
+     * @param prefix The prefix.
+     * @return The keys as an unmodifiable list.
+     */
+    public List<Key> keysWithPrefix(String prefix) {
+
+        return index().withPrefix(prefix);
+    }
+
+    /**
+     * Returns the keys whose names match the given glob, sorted by their name.
+     *
+     * A * matches any number of characters and a ? matches exactly one character.
+     *
+     * @param glob The glob like backend-eu-*.
+     * @return The keys as an unmodifiable list.
+     */
+    public List<Key> findKeys(String glob) {
+
+        return index().matching(glob);
+    }
+
+    private NameIndex<Key> index() {
+
+        NameIndex<Key> current = index;
+        if (current == null) {
+            Map<String, Key> byName = new HashMap<>();
+            for (Key key : getKeys()) {
+                byName.put(key.getName(), key);
+            }
+            current = index = NameIndex.of(byName);
+        }
+
+        return current;
+    }
+
+    /**
+     * Freezes the keys of this header, no keys can be added afterwards.
+     *
+     * The keys are stored in a minimal perfect hash map, so every lookup is a single array probe.
+     */
+    public void freeze() {
+
+        keys = PerfectHashMap.of(keys);
+    }
+
+    /**
+     * Returns whether the keys of this header are frozen.
+     *
+     * @return True if the header is frozen.
+     */
+    public boolean isFrozen() {
+
+        return keys instanceof PerfectHashMap;
     }
 
     /**
@@ -88,6 +259,16 @@ public class Header {
         return name;
     }
 
+    /**
+     * Returns the line of the header in the config file.
+     *
+     * @return The line or 0 if the header was not loaded from a file.
+     */
+    public int getLine() {
+
+        return line;
+    }
+
     /**
      * Returns the keys as an unmodifiable list.
      *
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.config;
+
+/**
+ * A listener which gets notified if a key is added to a header.
+ */
+@FunctionalInterface
+public interface HeaderListener {
+
+    /**
+     * Called after a key was added.
+     *
+     * @param header The header.
+     * @param key The added key.
+     * @param replaced The key with the same name which was replaced or null.
+     */
+    void keyAdded(Header header, Key key, Key replaced);
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.config;
+
+import de.progme.iris.exception.IrisInvalidConfigException;
+
+import java.util.*;
+
+/**
+ * Resolves references between values.
+ *
+ * The references are parsed and checked for cycles once while attaching,
+ * every value is resolved lazily on first access and the result is cached in the value.
+ * If a referenced key changes, only the values which depend on it are invalidated.
+ * If a referenced key is replaced by a new key with the same name, the references are bound to the new key.
+ */
+public final class Interpolation implements KeyListener, HeaderListener {
+
+    /**
+     * The keys which are referenced by a key.
+     */
+    private Map<Key, Set<Key>> dependencies = new IdentityHashMap<>();
+
+    /**
+     * The keys which reference a key.
+     */
+    private Map<Key, Set<Key>> dependents = new IdentityHashMap<>();
+
+    /**
+     * The full names of all keys with references or which are referenced.
+     */
+    private Map<Key, String> names = new IdentityHashMap<>();
+
+    /**
+     * The references which are bound to a key, with the key whose value contains them.
+     */
+    private Map<Key, List<Binding>> bindings = new IdentityHashMap<>();
+
+    private Interpolation() {
+
+    }
+
+    /**
+     * Parses the references of all values of the given headers, checks them and attaches the interpolation.
+     *
+     * @param headers The headers.
+     * @return The attached interpolation.
+     * @throws IrisInvalidConfigException If a reference is malformed, missing or part of a cycle.
+     */
+    public static Interpolation attach(Collection<Header> headers) throws IrisInvalidConfigException {
+
+        Interpolation interpolation = new Interpolation();
+
+        Map<String, Header> byName = new HashMap<>();
+        for (Header header : headers) {
+            byName.put(header.getName(), header);
+        }
+
+        for (Header header : headers) {
+            for (Key key : header.getKeys()) {
+                if (header.isInherited(key)) {
+                    // Parsed once with the header which defines it
+                    continue;
+                }
+                for (Value value : key.getValues()) {
+                    interpolation.parse(byName, header, key, value);
+                }
+            }
+        }
+
+        interpolation.checkCycles();
+
+        for (Key target : interpolation.dependents.keySet()) {
+            target.addListener(interpolation);
+        }
+
+        Set<String> referenced = new HashSet<>();
+        for (List<Binding> targetBindings : interpolation.bindings.values()) {
+            for (Binding binding : targetBindings) {
+                referenced.add(binding.reference.getHeader());
+            }
+        }
+        for (String name : referenced) {
+            byName.get(name).addListener(interpolation);
+        }
+
+        return interpolation;
+    }
+
+    private void parse(Map<String, Header> headers, Header header, Key key, Value value) throws IrisInvalidConfigException {
+
+        if (!value.hasReference()) {
+            return;
+        }
+
+        Template template;
+        try {
+            template = Template.parse(value.asRawString());
+        } catch (IllegalArgumentException e) {
+            throw invalid(key, header.getName() + "." + key.getName() + ": " + e.getMessage());
+        }
+
+        if (template == null) {
+            return;
+        }
+
+        for (Template.Reference reference : template.getReferences()) {
+            if (!reference.isKey()) {
+                if (reference.lookup() == null) {
+                    throw invalid(key, header.getName() + "." + key.getName() + ": " + reference + " is not set");
+                }
+                continue;
+            }
+
+            Header targetHeader = headers.get(reference.getHeader());
+            Key target = targetHeader != null ? targetHeader.getKey(reference.getKey()) : null;
+            if (target == null) {
+                throw invalid(key, header.getName() + "." + key.getName() + ": reference " + reference + " does not exist");
+            }
+            if (reference.getIndex() >= target.getValues().size()) {
+                throw invalid(key, header.getName() + "." + key.getName() + ": reference " + reference + " is out of bounds");
+            }
+
+            reference.bind(target);
+            bindings.computeIfAbsent(target, k -> new ArrayList<>()).add(new Binding(key, reference));
+
+            names.put(key, header.getName() + "." + key.getName());
+            names.put(target, targetHeader.getName() + "." + target.getName());
+            dependencies.computeIfAbsent(key, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(target);
+            dependents.computeIfAbsent(target, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(key);
+        }
+
+        value.setTemplate(template);
+    }
+
+    /**
+     * Checks the dependency graph for cycles with a depth first search.
+     *
+     * @throws IrisInvalidConfigException If there is a cycle.
+     */
+    private void checkCycles() throws IrisInvalidConfigException {
+
+        Map<Key, Boolean> visited = new IdentityHashMap<>();
+        Deque<Key> path = new ArrayDeque<>();
+
+        for (Key key : dependencies.keySet()) {
+            visit(key, visited, path);
+        }
+    }
+
+    private void visit(Key key, Map<Key, Boolean> visited, Deque<Key> path) throws IrisInvalidConfigException {
+
+        Boolean done = visited.get(key);
+        if (done != null) {
+            if (!done) {
+                StringBuilder cycle = new StringBuilder();
+                Iterator<Key> iterator = path.descendingIterator();
+                boolean inCycle = false;
+                while (iterator.hasNext()) {
+                    Key current = iterator.next();
+                    inCycle |= current == key;
+                    if (inCycle) {
+                        cycle.append(names.get(current)).append(" -> ");
+                    }
+                }
+                cycle.append(names.get(key));
+
+                throw invalid(key, "reference cycle " + cycle);
+            }
+
+            return;
+        }
+
+        visited.put(key, false);
+        path.push(key);
+
+        for (Key dependency : dependencies.getOrDefault(key, Collections.emptySet())) {
+            visit(dependency, visited, path);
+        }
+
+        path.pop();
+        visited.put(key, true);
+    }
+
+    @Override
+    public void keyChanged(Key key) {
+
+        invalidate(key, Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    @Override
+    public void keyAdded(Header header, Key key, Key replaced) {
+
+        List<Binding> replacedBindings = replaced != null ? bindings.get(replaced) : null;
+        if (replacedBindings == null) {
+            return;
+        }
+
+        // An inherited key is replaced only for the references through this header, not through its parent
+        Set<Key> rebound = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Iterator<Binding> iterator = replacedBindings.iterator(); iterator.hasNext(); ) {
+            Binding binding = iterator.next();
+            if (binding.reference.getHeader().equals(header.getName())) {
+                iterator.remove();
+                binding.reference.bind(key);
+                bindings.computeIfAbsent(key, k -> new ArrayList<>()).add(binding);
+                rebound.add(binding.key);
+            }
+        }
+        if (rebound.isEmpty()) {
+            return;
+        }
+
+        names.put(key, header.getName() + "." + key.getName());
+        if (!dependents.containsKey(key)) {
+            key.addListener(this);
+        }
+
+        for (Key dependent : rebound) {
+            dependents.computeIfAbsent(key, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(dependent);
+            dependencies.get(dependent).add(key);
+
+            if (!boundTo(dependent, replaced)) {
+                dependents.get(replaced).remove(dependent);
+                dependencies.get(dependent).remove(replaced);
+            }
+        }
+
+        if (replacedBindings.isEmpty()) {
+            bindings.remove(replaced);
+            dependents.remove(replaced);
+            replaced.removeListener(this);
+        }
+
+        Set<Key> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Key dependent : rebound) {
+            if (visited.add(dependent)) {
+                dependent.invalidate();
+                invalidate(dependent, visited);
+            }
+        }
+    }
+
+    /**
+     * Returns whether a reference of the given key is still bound to the given target.
+     */
+    private boolean boundTo(Key key, Key target) {
+
+        List<Binding> targetBindings = bindings.get(target);
+        if (targetBindings != null) {
+            for (Binding binding : targetBindings) {
+                if (binding.key == key) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Invalidates all values which directly or indirectly reference the given key.
+     *
+     * @param key The changed key.
+     * @param visited The already invalidated keys.
+     */
+    private void invalidate(Key key, Set<Key> visited) {
+
+        Set<Key> keys = dependents.get(key);
+        if (keys == null) {
+            return;
+        }
+
+        for (Key dependent : keys) {
+            if (visited.add(dependent)) {
+                dependent.invalidate();
+                invalidate(dependent, visited);
+            }
+        }
+    }
+
+    private static IrisInvalidConfigException invalid(Key key, String message) {
+
+        return new IrisInvalidConfigException((key.getLine() > 0 ? "line " + key.getLine() + ": " : "") + message, key.getLine() > 0 ? key.getLine() : -1);
+    }
+
+    /**
+     * A reference and the key whose value contains it.
+     */
+    private static final class Binding {
+
+        private final Key key;
+
+        private final Template.Reference reference;
+
+        private Binding(Key key, Template.Reference reference) {
+
+            this.key = key;
+            this.reference = reference;
+        }
+    }
+}
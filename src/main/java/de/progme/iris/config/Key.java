@@ -43,6 +43,36 @@ public class Key {
      */
     private int index = -1;
 
+    /**
+     * The line of the key in the config file or 0 if it was not loaded from a file.
+     */
+    private int line;
+
+    /**
+     * The listeners which get notified if the values change or null if there are none.
+     */
+    private List<KeyListener> listeners;
+
+    /**
+     * The number of changes of the values, including the values added while loading.
+     */
+    private int modCount;
+
+    /**
+     * The number of times the interpolated values were invalidated because a referenced key changed.
+     */
+    private int invalidations;
+
+    /**
+     * The membership index of the values which is built on first use.
+     */
+    private Membership membership;
+
+    /**
+     * The consistent hash ring over the values which is built on first use.
+     */
+    private HashRing ring;
+
     /**
      * Creates a new key with the given name.
      *
@@ -53,6 +83,18 @@ public class Key {
         this.name = name;
     }
 
+    /**
+     * Creates a new key with the given name and the line it was defined in.
+     *
+     * @param name The name of the key.
+     * @param line The line of the key in the config file.
+     */
+    public Key(String name, int line) {
+
+        this.name = name;
+        this.line = line;
+    }
+
     /**
      * Adds a value to this key.
      *
@@ -61,6 +103,95 @@ public class Key {
     public void addValue(Value value) {
 
         values.add(value);
+
+        changed();
+    }
+
+    /**
+     * Replaces the value at the given index.
+     *
+     * @param index The index of the value.
+     * @param value The new value.
+     */
+    public void setValue(int index, Value value) {
+
+        values.set(index, value);
+
+        changed();
+    }
+
+    /**
+     * Removes the value at the given index.
+     *
+     * @param index The index of the value.
+     */
+    public void removeValue(int index) {
+
+        values.remove(index);
+
+        changed();
+    }
+
+    /**
+     * Adds a listener which gets notified if the values of this key change.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(KeyListener listener) {
+
+        if (listeners == null) {
+            listeners = new ArrayList<>(1);
+        }
+
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(KeyListener listener) {
+
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Notifies the listeners that the values changed.
+     */
+    private void changed() {
+
+        modCount++;
+
+        if (listeners != null) {
+            for (KeyListener listener : listeners) {
+                listener.keyChanged(this);
+            }
+        }
+    }
+
+    /**
+     * Invalidates the interpolated values, so they are resolved again on their next use.
+     */
+    void invalidate() {
+
+        for (Value value : values) {
+            if (value.getTemplate() != null) {
+                value.invalidate();
+            }
+        }
+
+        invalidations++;
+    }
+
+    /**
+     * Returns a number which changes whenever the values or their resolved strings change.
+     */
+    int version() {
+
+        return modCount + invalidations;
     }
 
     /**
@@ -73,6 +204,29 @@ public class Key {
         return name;
     }
 
+    /**
+     * Returns the line of the key in the config file.
+     *
+     * @return The line or 0 if the key was not loaded from a file.
+     */
+    public int getLine() {
+
+        return line;
+    }
+
+    /**
+     * Returns the number of changes of the values.
+     *
+     * Every added, replaced or removed value counts as one change,
+     * so a key which was loaded from a file and not changed afterwards has one change per value.
+     *
+     * @return The number of changes.
+     */
+    public int getModCount() {
+
+        return modCount;
+    }
+
     /**
      * Returns the value at the given index.
      *
@@ -171,6 +325,80 @@ public class Key {
         return next().asBoolean();
     }
 
+    /**
+     * Returns whether one of the values is the given string.
+     *
+     * The values are indexed on the first call and after they changed, afterwards the check needs no allocation.
+     *
+     * @param value The string.
+     * @return True if one of the values is the string.
+     */
+    public boolean contains(String value) {
+
+        return membership().contains(value);
+    }
+
+    /**
+     * Returns whether one of the values is the given integer.
+     *
+     * Every value which Long.parseLong accepts is found, so 080 and +80 both contain 80.
+     * The values are indexed on the first call and after they changed, afterwards the check needs no allocation.
+     *
+     * @param value The integer.
+     * @return True if one of the values is the integer.
+     */
+    public boolean contains(long value) {
+
+        return membership().contains(value);
+    }
+
+    private Membership membership() {
+
+        Membership current = membership;
+        if (current == null || current.version != version()) {
+            current = membership = new Membership(getValues(), version());
+        }
+
+        return current;
+    }
+
+    /**
+     * Returns the value which the given hash is routed to on a consistent hash ring over the values.
+     *
+     * The same hash is always routed to the same value, and if a value is added or removed only
+     * the hashes of that value move. The ring is built on the first call and after the values changed,
+     * afterwards a lookup is a binary search without allocation.
+     *
+     * @param hash The hash of e.g. a session id.
+     * @return The value or null if the key has no values.
+     */
+    public Value route(long hash) {
+
+        return route(hash, null);
+    }
+
+    /**
+     * Returns the value which the given hash is routed to on a consistent hash ring over the weighted values.
+     *
+     * The values of the weights key are the integer weights of the values at the same positions,
+     * a value without a weight has the weight 1 and a value with the weight 0 gets no hashes.
+     * The ring is rebuilt if the values or the weights changed.
+     *
+     * @param hash The hash of e.g. a session id.
+     * @param weights The key with the weights or null for equal weights.
+     * @return The value or null if no value has a weight.
+     */
+    public Value route(long hash, Key weights) {
+
+        HashRing current = ring;
+        if (current == null || current.version != version() || current.weights != weights
+                || (weights != null && current.weightsVersion != weights.version())) {
+            current = ring = new HashRing(getValues(), version(), weights);
+        }
+
+        return current.route(hash);
+    }
+
     /**
      * Returns the values as an unmodifiable list.
      *
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.config;
+
+import de.progme.iris.index.LongHashSet;
+import de.progme.iris.index.StringHashSet;
+
+import java.util.List;
+
+/**
+ * The membership index of the values of a key.
+ *
+ * Integers are stored in a bitset if their range is dense, otherwise in a primitive hash set.
+ * Other values are stored in a string hash set. If all values are written as canonical integers,
+ * strings are checked against the numbers, so no strings are kept at all.
+ */
+final class Membership {
+
+    /**
+     * The maximum number of bits per value for which a bitset is used.
+     */
+    private static final int MAX_BITS_PER_VALUE = 64;
+
+    /**
+     * The version of the key this index was built for.
+     */
+    final int version;
+
+    private final long minimum;
+
+    private final long[] bits;
+
+    private final LongHashSet numbers;
+
+    private final StringHashSet strings;
+
+    Membership(List<Value> values, int version) {
+
+        this.version = version;
+
+        long[] integers = new long[values.size()];
+        String[] others = null;
+        int integerCount = 0;
+        int canonicalCount = 0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+
+        for (Value value : values) {
+            if (value.isInteger()) {
+                long integer = value.asLong();
+                integers[integerCount++] = integer;
+                min = Math.min(min, integer);
+                max = Math.max(max, integer);
+                if (value.isCanonicalInteger()) {
+                    canonicalCount++;
+                }
+            }
+        }
+
+        if (canonicalCount < values.size()) {
+            // Mixed or non canonical values need the exact strings, canonical integers are also found by their string
+            others = new String[values.size()];
+            for (int i = 0; i < values.size(); i++) {
+                others[i] = values.get(i).asString();
+            }
+        }
+
+        long range = integerCount > 0 ? max - min + 1 : 0;
+        if (integerCount > 0 && range > 0 && range <= (long) integerCount * MAX_BITS_PER_VALUE && range < Integer.MAX_VALUE) {
+            long[] words = new long[(int) ((range + 63) >>> 6)];
+            for (int i = 0; i < integerCount; i++) {
+                long bit = integers[i] - min;
+                words[(int) (bit >>> 6)] |= 1L << bit;
+            }
+            this.bits = words;
+            this.numbers = null;
+        } else {
+            this.bits = null;
+            this.numbers = new LongHashSet(integers, integerCount);
+        }
+
+        this.minimum = min;
+        this.strings = others != null ? new StringHashSet(others, others.length) : null;
+    }
+
+    boolean contains(long value) {
+
+        if (bits != null) {
+            // The difference overflows for values far above the minimum
+            long bit = value - minimum;
+
+            return value >= minimum && bit >= 0 && bit < (long) bits.length << 6 && (bits[(int) (bit >>> 6)] & (1L << bit)) != 0;
+        }
+
+        return numbers.contains(value);
+    }
+
+    boolean contains(String value) {
+
+        if (strings != null) {
+            return strings.contains(value);
+        }
+
+        return Value.isCanonicalInteger(value) && contains(Long.parseLong(value));
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A parsed value which contains references like ${header.key}, ${header.key[1]}, ${env:NAME} or ${sys:name}.
+ */
+final class Template {
+
+    /**
+     * The literal parts around the references, always one more than references.
+     */
+    private final String[] literals;
+
+    /**
+     * The references in order.
+     */
+    private final Reference[] references;
+
+    private Template(String[] literals, Reference[] references) {
+
+        this.literals = literals;
+        this.references = references;
+    }
+
+    /**
+     * Parses the given raw value.
+     *
+     * @param raw The raw value.
+     * @return The template or null if the value has no references.
+     * @throws IllegalArgumentException If a reference is malformed.
+     */
+    static Template parse(String raw) {
+
+        int start = raw.indexOf("${");
+        if (start == -1) {
+            return null;
+        }
+
+        List<String> literals = new ArrayList<>();
+        List<Reference> references = new ArrayList<>();
+
+        int position = 0;
+        while (start != -1) {
+            int end = raw.indexOf('}', start + 2);
+            if (end == -1) {
+                throw new IllegalArgumentException("unclosed reference in '" + raw + "'");
+            }
+
+            literals.add(raw.substring(position, start));
+            references.add(Reference.parse(raw.substring(start + 2, end)));
+
+            position = end + 1;
+            start = raw.indexOf("${", position);
+        }
+        literals.add(raw.substring(position));
+
+        return new Template(literals.toArray(new String[0]), references.toArray(new Reference[0]));
+    }
+
+    /**
+     * Resolves the template.
+     *
+     * @return The resolved value.
+     */
+    String resolve() {
+
+        StringBuilder builder = new StringBuilder(literals[0]);
+        for (int i = 0; i < references.length; i++) {
+            builder.append(references[i].resolve()).append(literals[i + 1]);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Returns the references of the template.
+     *
+     * @return The references.
+     */
+    Reference[] getReferences() {
+
+        return references;
+    }
+
+    /**
+     * A single reference of a template.
+     */
+    static final class Reference {
+
+        private final String source;
+
+        private final String header;
+
+        private final String key;
+
+        /**
+         * The index of the referenced value or -1 to join all values of the key.
+         */
+        private final int index;
+
+        /**
+         * The referenced key which is bound while attaching.
+         */
+        private Key target;
+
+        private Reference(String source, String header, String key, int index) {
+
+            this.source = source;
+            this.header = header;
+            this.key = key;
+            this.index = index;
+        }
+
+        private static Reference parse(String expression) {
+
+            if (expression.startsWith("env:") || expression.startsWith("sys:")) {
+                return new Reference(expression.substring(0, 3), null, expression.substring(4), -1);
+            }
+
+            int index = -1;
+            if (expression.endsWith("]") && expression.indexOf('[') != -1) {
+                int open = expression.lastIndexOf('[');
+                try {
+                    index = Integer.parseInt(expression.substring(open + 1, expression.length() - 1));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("invalid index in reference '" + expression + "'");
+                }
+                expression = expression.substring(0, open);
+            }
+
+            int dot = expression.lastIndexOf('.');
+            if (dot <= 0 || dot == expression.length() - 1) {
+                throw new IllegalArgumentException("invalid reference '" + expression + "'");
+            }
+
+            return new Reference(null, expression.substring(0, dot), expression.substring(dot + 1), index);
+        }
+
+        /**
+         * Returns whether the reference points to another key.
+         *
+         * @return True if it references a key, false if it references the environment or a system property.
+         */
+        boolean isKey() {
+
+            return source == null;
+        }
+
+        String getHeader() {
+
+            return header;
+        }
+
+        String getKey() {
+
+            return key;
+        }
+
+        int getIndex() {
+
+            return index;
+        }
+
+        void bind(Key target) {
+
+            this.target = target;
+        }
+
+        /**
+         * Returns the current value of the referenced environment variable or system property.
+         *
+         * @return The value or null if it is not set.
+         */
+        String lookup() {
+
+            return source.equals("env") ? System.getenv(key) : System.getProperty(key);
+        }
+
+        private String resolve() {
+
+            if (!isKey()) {
+                String value = lookup();
+                if (value == null) {
+                    throw new IllegalStateException(source + " variable '" + key + "' is not set");
+                }
+
+                return value;
+            }
+
+            List<Value> values = target.getValues();
+            if (index >= 0) {
+                if (index >= values.size()) {
+                    throw new IllegalStateException(header + "." + key + " has no value at index " + index);
+                }
+
+                return values.get(index).asString();
+            }
+
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    builder.append(' ');
+                }
+                builder.append(values.get(i).asString());
+            }
+
+            return builder.toString();
+        }
+
+        @Override
+        public String toString() {
+
+            return isKey() ? header + "." + key + (index >= 0 ? "[" + index + "]" : "") : source + ":" + key;
+        }
+    }
+}
@@ -19,16 +19,66 @@
 
 package de.progme.iris.config;
 
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Created by Marvin Erkes on 18.06.2016.
  */
 public class Value {
 
     /**
-     * The value of the value.
+     * The value of the value, materialized on first access if the value is a slice.
      */
     private String value;
 
+    /**
+     * The shared buffer with the UTF-8 encoded value or null if the value was created from a string.
+     */
+    private byte[] buffer;
+
+    /**
+     * The offset of the value in the buffer.
+     */
+    private int offset;
+
+    /**
+     * The length of the value in the buffer.
+     */
+    private int length;
+
+    /**
+     * The type the value was converted to or null if it was not converted yet.
+     */
+    private ValueType type;
+
+    /**
+     * The converted integral value (int, long, boolean, enum ordinal, duration in nanoseconds or byte size).
+     */
+    private long primitive;
+
+    /**
+     * The converted decimal value.
+     */
+    private double decimal;
+
+    /**
+     * The parsed template if the value references other values or null.
+     */
+    private Template template;
+
+    /**
+     * The cached result of the template.
+     */
+    private String resolved;
+
+    /**
+     * The powers of ten which are exact doubles.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
     /**
      * Creates a new value with the given value.
      *
@@ -39,6 +89,23 @@ public class Value {
         this.value = value;
     }
 
+    /**
+     * Creates a new value which is a slice of a shared buffer.
+     *
+     * The buffer is not copied and must not be changed afterwards.
+     * The string is only created if it is needed, numbers are parsed from the buffer directly.
+     *
+     * @param buffer The buffer with the UTF-8 encoded value.
+     * @param offset The offset of the value.
+     * @param length The length of the value.
+     */
+    public Value(byte[] buffer, int offset, int length) {
+
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
     /**
      * Returns the value as a string.
      *
@@ -46,7 +113,90 @@ public class Value {
      */
     public String asString() {
 
-        return value;
+        if (template == null) {
+            return asRawString();
+        }
+
+        String result = resolved;
+        if (result == null) {
+            result = resolved = template.resolve();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the value as it is written in the config, without resolving references.
+     *
+     * @return The raw value.
+     */
+    public String asRawString() {
+
+        String raw = value;
+        if (raw == null) {
+            raw = value = new String(buffer, offset, length, StandardCharsets.UTF_8);
+        }
+
+        return raw;
+    }
+
+    /**
+     * Returns whether the raw value contains a reference start.
+     *
+     * @return True if the raw value contains ${.
+     */
+    boolean hasReference() {
+
+        if (buffer == null) {
+            return value.contains("${");
+        }
+
+        for (int i = offset, end = offset + length - 1; i < end; i++) {
+            if (buffer[i] == '$' && buffer[i + 1] == '{') {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Converts the value once to the given type and stores the result,
+     * so that the typed getters don't need to parse the string again.
+     *
+     * @param type The type to convert to.
+     * @return This value.
+     * @throws IllegalArgumentException If the value is not valid for the given type.
+     */
+    public Value convert(ValueType type) {
+
+        type.convert(this);
+
+        return this;
+    }
+
+    /**
+     * Stores the converted value.
+     *
+     * @param type The type.
+     * @param primitive The integral value.
+     * @param decimal The decimal value.
+     */
+    void store(ValueType type, long primitive, double decimal) {
+
+        this.type = type;
+        this.primitive = primitive;
+        this.decimal = decimal;
+    }
+
+    /**
+     * Returns the type the value was converted to.
+     *
+     * @return The type or null if the value was not converted.
+     */
+    public ValueType getType() {
+
+        return type;
     }
 
     /**
@@ -56,7 +206,15 @@ public class Value {
      */
     public int asInt() {
 
-        return Integer.parseInt(value);
+        if (type == ValueType.INT) {
+            return (int) primitive;
+        }
+
+        if (template == null && buffer != null) {
+            return (int) parseIntegral(true);
+        }
+
+        return Integer.parseInt(asString());
     }
 
     /**
@@ -66,7 +224,15 @@ public class Value {
      */
     public long asLong() {
 
-        return Long.parseLong(value);
+        if (type == ValueType.INT || type == ValueType.LONG) {
+            return primitive;
+        }
+
+        if (template == null && buffer != null) {
+            return parseIntegral(false);
+        }
+
+        return Long.parseLong(asString());
     }
 
     /**
@@ -76,7 +242,19 @@ public class Value {
      */
     public double asDouble() {
 
-        return Double.parseDouble(value);
+        if (type == ValueType.DOUBLE) {
+            return decimal;
+        }
+
+        if (type == ValueType.INT || type == ValueType.LONG) {
+            return primitive;
+        }
+
+        if (template == null && buffer != null) {
+            return parseDecimal();
+        }
+
+        return Double.parseDouble(asString());
     }
 
     /**
@@ -86,7 +264,11 @@ public class Value {
      */
     public float asFloat() {
 
-        return Float.parseFloat(value);
+        if (type == ValueType.DOUBLE) {
+            return (float) decimal;
+        }
+
+        return Float.parseFloat(asString());
     }
 
     /**
@@ -96,12 +278,311 @@ public class Value {
      */
     public boolean asBoolean() {
 
-        return Boolean.parseBoolean(value);
+        if (type == ValueType.BOOLEAN) {
+            return primitive != 0;
+        }
+
+        if (template == null && buffer != null) {
+            return length == 4 && (buffer[offset] | 0x20) == 't' && (buffer[offset + 1] | 0x20) == 'r'
+                    && (buffer[offset + 2] | 0x20) == 'u' && (buffer[offset + 3] | 0x20) == 'e';
+        }
+
+        return Boolean.parseBoolean(asString());
+    }
+
+    /**
+     * Returns the value as a duration in the given unit.
+     *
+     * A duration is a number followed by one of the units ns, us, ms, s, m, h or d.
+     * A number without a unit is in milliseconds.
+     *
+     * @param unit The unit to return the duration in.
+     * @return The value as a duration.
+     */
+    public long asDuration(TimeUnit unit) {
+
+        if (type == ValueType.DURATION) {
+            return unit.convert(primitive, TimeUnit.NANOSECONDS);
+        }
+
+        return unit.convert(ValueType.parseDuration(asString()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the value as a byte size.
+     *
+     * A byte size is a number followed by one of the units b, k, kb, m, mb, g, gb, t or tb.
+     * A number without a unit is in bytes.
+     *
+     * @return The value as a number of bytes.
+     */
+    public long asBytes() {
+
+        if (type == ValueType.BYTE_SIZE) {
+            return primitive;
+        }
+
+        return ValueType.parseByteSize(asString());
+    }
+
+    /**
+     * Returns the value as an enum constant of the given enum class.
+     *
+     * The name of the constant is matched case insensitive.
+     *
+     * @param enumType The enum class.
+     * @param <E> The type of the enum.
+     * @return The enum constant.
+     */
+    public <E extends Enum<E>> E asEnum(Class<E> enumType) {
+
+        if (type != null && type.getEnumType() == enumType) {
+            return enumType.cast(type.getEnumConstant((int) primitive));
+        }
+
+        return enumType.getEnumConstants()[ValueType.parseEnum(enumType, asString())];
+    }
+
+    /**
+     * The digits of Long.MAX_VALUE, a negative integer can end with one more.
+     */
+    private static final String MAX_DIGITS = String.valueOf(Long.MAX_VALUE);
+
+    private static final int NO_INTEGER = 0;
+
+    private static final int INTEGER = 1;
+
+    private static final int CANONICAL_INTEGER = 2;
+
+    /**
+     * Returns whether Long.parseLong accepts the value, e.g. 80, +80 or 080.
+     *
+     * @return True if the value is an integer.
+     */
+    boolean isInteger() {
+
+        return integerForm() != NO_INTEGER;
+    }
+
+    /**
+     * Returns whether the value is written like Long.toString would write it,
+     * so two such values are equal exactly if their numbers are equal.
+     *
+     * @return True if the value is a canonical integer.
+     */
+    boolean isCanonicalInteger() {
+
+        return integerForm() == CANONICAL_INTEGER;
+    }
+
+    private int integerForm() {
+
+        if (template == null && buffer != null) {
+            int end = offset + length;
+            int start = offset < end && (buffer[offset] == '-' || buffer[offset] == '+') ? offset + 1 : offset;
+            if (start == end) {
+                return NO_INTEGER;
+            }
+
+            int significant = -1;
+            for (int i = start; i < end; i++) {
+                if (buffer[i] < '0' || buffer[i] > '9') {
+                    return NO_INTEGER;
+                }
+                if (significant == -1 && buffer[i] != '0') {
+                    significant = i;
+                }
+            }
+
+            if (significant != -1 && end - significant >= MAX_DIGITS.length()) {
+                if (end - significant > MAX_DIGITS.length()) {
+                    return NO_INTEGER;
+                }
+                for (int i = 0; i < MAX_DIGITS.length(); i++) {
+                    // Long.MIN_VALUE has the last digit one higher than Long.MAX_VALUE
+                    int limit = MAX_DIGITS.charAt(i) + (i == MAX_DIGITS.length() - 1 && buffer[offset] == '-' ? 1 : 0);
+                    if (buffer[significant + i] != limit) {
+                        if (buffer[significant + i] > limit) {
+                            return NO_INTEGER;
+                        }
+                        break;
+                    }
+                }
+            }
+
+            return buffer[offset] != '+' && (significant == start || (end - start == 1 && start == offset)) ? CANONICAL_INTEGER : INTEGER;
+        }
+
+        return integerForm(asString());
+    }
+
+    /**
+     * Returns whether the given string is written like Long.toString would write it.
+     *
+     * @param string The string.
+     * @return True if the string is a canonical integer.
+     */
+    static boolean isCanonicalInteger(String string) {
+
+        return integerForm(string) == CANONICAL_INTEGER;
+    }
+
+    private static int integerForm(String string) {
+
+        int end = string.length();
+        int start = end > 0 && (string.charAt(0) == '-' || string.charAt(0) == '+') ? 1 : 0;
+        if (start == end) {
+            return NO_INTEGER;
+        }
+
+        int significant = -1;
+        for (int i = start; i < end; i++) {
+            if (string.charAt(i) < '0' || string.charAt(i) > '9') {
+                return NO_INTEGER;
+            }
+            if (significant == -1 && string.charAt(i) != '0') {
+                significant = i;
+            }
+        }
+
+        if (significant != -1 && end - significant >= MAX_DIGITS.length()) {
+            if (end - significant > MAX_DIGITS.length()) {
+                return NO_INTEGER;
+            }
+            for (int i = 0; i < MAX_DIGITS.length(); i++) {
+                int limit = MAX_DIGITS.charAt(i) + (i == MAX_DIGITS.length() - 1 && string.charAt(0) == '-' ? 1 : 0);
+                if (string.charAt(significant + i) != limit) {
+                    if (string.charAt(significant + i) > limit) {
+                        return NO_INTEGER;
+                    }
+                    break;
+                }
+            }
+        }
+
+        return string.charAt(0) != '+' && (significant == start || (end - start == 1 && start == 0)) ? CANONICAL_INTEGER : INTEGER;
+    }
+
+    /**
+     * Parses the slice as an int or a long without creating a string.
+     *
+     * Anything else than an optional sign followed by ASCII digits is parsed from the string,
+     * so the result and the exceptions are the same as from Integer.parseInt or Long.parseLong.
+     *
+     * @param isInt Whether the value is parsed as an int.
+     * @return The parsed value.
+     */
+    private long parseIntegral(boolean isInt) {
+
+        int position = offset;
+        int end = offset + length;
+        boolean negative = false;
+
+        if (position < end && (buffer[position] == '-' || buffer[position] == '+')) {
+            negative = buffer[position] == '-';
+            position++;
+        }
+
+        if (position < end) {
+            // Accumulates negatively like Long.parseLong, so the minimum value does not overflow
+            long limit = negative ? (isInt ? Integer.MIN_VALUE : Long.MIN_VALUE) : -(isInt ? Integer.MAX_VALUE : Long.MAX_VALUE);
+            long minimum = limit / 10;
+            long result = 0;
+            for (; position < end; position++) {
+                int digit = buffer[position] - '0';
+                if (digit < 0 || digit > 9 || result < minimum || (result *= 10) < limit + digit) {
+                    break;
+                }
+                result -= digit;
+            }
+
+            if (position == end) {
+                return negative ? result : -result;
+            }
+        }
+
+        return isInt ? Integer.parseInt(asRawString()) : Long.parseLong(asRawString());
+    }
+
+    /**
+     * Parses the slice as a double without creating a string.
+     *
+     * Plain decimals with up to 15 digits are exact as a long divided by a power of ten,
+     * anything else is parsed from the string.
+     *
+     * @return The parsed value.
+     */
+    private double parseDecimal() {
+
+        int position = offset;
+        int end = offset + length;
+        boolean negative = false;
+
+        if (position < end && (buffer[position] == '-' || buffer[position] == '+')) {
+            negative = buffer[position] == '-';
+            position++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; position < end; position++) {
+            int digit = buffer[position] - '0';
+            if (digit >= 0 && digit <= 9) {
+                mantissa = mantissa * 10 + digit;
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (buffer[position] == '.' && scale == -1) {
+                scale = 0;
+            } else {
+                break;
+            }
+        }
+
+        if (position == end && digits > 0 && digits <= 15 && scale != 0) {
+            double result = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+
+            return negative ? -result : result;
+        }
+
+        return Double.parseDouble(asRawString());
+    }
+
+    /**
+     * Sets the parsed template of this value.
+     *
+     * @param template The template.
+     */
+    void setTemplate(Template template) {
+
+        this.template = template;
+    }
+
+    /**
+     * Returns the parsed template of this value.
+     *
+     * @return The template or null.
+     */
+    Template getTemplate() {
+
+        return template;
+    }
+
+    /**
+     * Drops the cached result of the template and the converted value,
+     * because a referenced value changed.
+     */
+    void invalidate() {
+
+        this.resolved = null;
+        this.type = null;
     }
 
     @Override
     public String toString() {
 
-        return value;
+        return asString();
     }
 }
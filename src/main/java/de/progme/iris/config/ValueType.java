@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.config;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The type of a value which is used to convert a value once after loading.
+ */
+public final class ValueType {
+
+    /**
+     * A string value, the value is left as it is.
+     */
+    public static final ValueType STRING = new ValueType("string", null);
+
+    /**
+     * An int value.
+     */
+    public static final ValueType INT = new ValueType("int", null);
+
+    /**
+     * A long value.
+     */
+    public static final ValueType LONG = new ValueType("long", null);
+
+    /**
+     * A double value.
+     */
+    public static final ValueType DOUBLE = new ValueType("double", null);
+
+    /**
+     * A boolean value, either true or false.
+     */
+    public static final ValueType BOOLEAN = new ValueType("boolean", null);
+
+    /**
+     * A duration value like 500ms, 30s or 5m.
+     */
+    public static final ValueType DURATION = new ValueType("duration", null);
+
+    /**
+     * A byte size value like 512, 64k or 16mb.
+     */
+    public static final ValueType BYTE_SIZE = new ValueType("byte-size", null);
+
+    /**
+     * The name of the type.
+     */
+    private String name;
+
+    /**
+     * The enum class if this is an enum type.
+     */
+    private Class<? extends Enum<?>> enumType;
+
+    /**
+     * The cached constants of the enum class.
+     */
+    private Enum<?>[] enumConstants;
+
+    private ValueType(String name, Class<? extends Enum<?>> enumType) {
+
+        this.name = name;
+        this.enumType = enumType;
+
+        if (enumType != null) {
+            this.enumConstants = enumType.getEnumConstants();
+        }
+    }
+
+    /**
+     * Creates a new enum type for the given enum class.
+     *
+     * @param enumType The enum class.
+     * @param <E> The type of the enum.
+     * @return The value type.
+     */
+    public static <E extends Enum<E>> ValueType enumeration(Class<E> enumType) {
+
+        return new ValueType("enum " + enumType.getSimpleName(), enumType);
+    }
+
+    /**
+     * Converts the given value and stores the converted result in it.
+     *
+     * @param value The value to convert.
+     * @throws IllegalArgumentException If the value is not valid for this type.
+     */
+    void convert(Value value) {
+
+        try {
+            if (this == STRING) {
+                value.store(this, 0, 0);
+            } else if (this == INT) {
+                value.store(this, value.asInt(), 0);
+            } else if (this == LONG) {
+                value.store(this, value.asLong(), 0);
+            } else if (this == DOUBLE) {
+                value.store(this, 0, value.asDouble());
+            } else if (this == BOOLEAN) {
+                String string = value.asString();
+                if (string.equalsIgnoreCase("true")) {
+                    value.store(this, 1, 0);
+                } else if (string.equalsIgnoreCase("false")) {
+                    value.store(this, 0, 0);
+                } else {
+                    throw new IllegalArgumentException();
+                }
+            } else if (this == DURATION) {
+                value.store(this, parseDuration(value.asString()), 0);
+            } else if (this == BYTE_SIZE) {
+                value.store(this, parseByteSize(value.asString()), 0);
+            } else {
+                value.store(this, parseEnum(enumConstants, value.asString()), 0);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("'" + value.asString() + "' is not a valid " + name);
+        }
+    }
+
+    /**
+     * Returns the name of the type.
+     *
+     * @return The name of the type.
+     */
+    public String getName() {
+
+        return name;
+    }
+
+    /**
+     * Returns the enum class if this is an enum type.
+     *
+     * @return The enum class or null.
+     */
+    public Class<? extends Enum<?>> getEnumType() {
+
+        return enumType;
+    }
+
+    /**
+     * Returns the enum constant with the given ordinal.
+     *
+     * @param ordinal The ordinal.
+     * @return The enum constant.
+     */
+    Enum<?> getEnumConstant(int ordinal) {
+
+        return enumConstants[ordinal];
+    }
+
+    /**
+     * Parses a duration to nanoseconds.
+     *
+     * @param string The duration.
+     * @return The duration in nanoseconds.
+     * @throws IllegalArgumentException If the duration is invalid or too long for a long of nanoseconds.
+     */
+    static long parseDuration(String string) {
+
+        int end = numberEnd(string);
+        long amount = Long.parseLong(string.substring(0, end));
+
+        switch (string.substring(end).toLowerCase(Locale.ROOT)) {
+            case "ns":
+                return amount;
+            case "us":
+                return multiply(amount, TimeUnit.MICROSECONDS.toNanos(1), string);
+            case "":
+            case "ms":
+                return multiply(amount, TimeUnit.MILLISECONDS.toNanos(1), string);
+            case "s":
+                return multiply(amount, TimeUnit.SECONDS.toNanos(1), string);
+            case "m":
+                return multiply(amount, TimeUnit.MINUTES.toNanos(1), string);
+            case "h":
+                return multiply(amount, TimeUnit.HOURS.toNanos(1), string);
+            case "d":
+                return multiply(amount, TimeUnit.DAYS.toNanos(1), string);
+            default:
+                throw new IllegalArgumentException("unknown duration unit in '" + string + "'");
+        }
+    }
+
+    /**
+     * Parses a byte size to bytes.
+     *
+     * @param string The byte size.
+     * @return The number of bytes.
+     * @throws IllegalArgumentException If the byte size is invalid or too large for a long.
+     */
+    static long parseByteSize(String string) {
+
+        int end = numberEnd(string);
+        long amount = Long.parseLong(string.substring(0, end));
+
+        switch (string.substring(end).toLowerCase(Locale.ROOT)) {
+            case "":
+            case "b":
+                return amount;
+            case "k":
+            case "kb":
+                return multiply(amount, 1L << 10, string);
+            case "m":
+            case "mb":
+                return multiply(amount, 1L << 20, string);
+            case "g":
+            case "gb":
+                return multiply(amount, 1L << 30, string);
+            case "t":
+            case "tb":
+                return multiply(amount, 1L << 40, string);
+            default:
+                throw new IllegalArgumentException("unknown byte size unit in '" + string + "'");
+        }
+    }
+
+    /**
+     * Multiplies the amount of a duration or byte size with the factor of its unit.
+     *
+     * @throws IllegalArgumentException If the result does not fit into a long.
+     */
+    private static long multiply(long amount, long factor, String string) {
+
+        try {
+            return Math.multiplyExact(amount, factor);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("'" + string + "' is out of range");
+        }
+    }
+
+    /**
+     * Parses the ordinal of an enum constant by its case insensitive name.
+     *
+     * @param enumType The enum class.
+     * @param string The name of the constant.
+     * @return The ordinal of the constant.
+     */
+    static int parseEnum(Class<? extends Enum<?>> enumType, String string) {
+
+        return parseEnum(enumType.getEnumConstants(), string);
+    }
+
+    private static int parseEnum(Enum<?>[] constants, String string) {
+
+        for (Enum<?> constant : constants) {
+            if (constant.name().equalsIgnoreCase(string)) {
+                return constant.ordinal();
+            }
+        }
+
+        throw new IllegalArgumentException("unknown enum constant '" + string + "'");
+    }
+
+    /**
+     * Returns the index after the leading digits of the given string.
+     *
+     * @param string The string.
+     * @return The index after the number.
+     */
+    private static int numberEnd(String string) {
+
+        int end = 0;
+        if (end < string.length() && string.charAt(end) == '-') {
+            end++;
+        }
+        while (end < string.length() && Character.isDigit(string.charAt(end))) {
+            end++;
+        }
+
+        return end;
+    }
+
+    @Override
+    public String toString() {
+
+        return name;
+    }
+}
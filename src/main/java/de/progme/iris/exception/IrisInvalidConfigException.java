@@ -24,6 +24,11 @@ package de.progme.iris.exception;
  */
 public class IrisInvalidConfigException extends IrisException {
 
+    /**
+     * The line in the config file which is invalid or -1 if unknown.
+     */
+    private int line = -1;
+
     /**
      * Creates a new iris invalid config exception with the given message.
      *
@@ -33,4 +38,27 @@ public class IrisInvalidConfigException extends IrisException {
 
         super(message);
     }
+
+    /**
+     * Creates a new iris invalid config exception with the given message and line.
+     *
+     * @param message The message.
+     * @param line The invalid line in the config file.
+     */
+    public IrisInvalidConfigException(String message, int line) {
+
+        super(message);
+
+        this.line = line;
+    }
+
+    /**
+     * Returns the invalid line in the config file.
+     *
+     * @return The line or -1 if it is unknown.
+     */
+    public int getLine() {
+
+        return line;
+    }
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.exception;
+
+import de.progme.iris.schema.Violation;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Thrown if a config does not match its schema.
+ */
+public class IrisSchemaException extends IrisInvalidConfigException {
+
+    /**
+     * All violations of the schema.
+     */
+    private List<Violation> violations;
+
+    /**
+     * Creates a new iris schema exception with the given violations.
+     *
+     * @param violations The violations.
+     */
+    public IrisSchemaException(List<Violation> violations) {
+
+        super(violations.size() + " schema violation(s):\n" + violations.stream().map(Violation::toString).collect(Collectors.joining("\n")),
+                violations.isEmpty() ? -1 : violations.get(0).getLine());
+
+        this.violations = Collections.unmodifiableList(violations);
+    }
+
+    /**
+     * Returns all violations of the schema.
+     *
+     * @return The violations as an unmodifiable list.
+     */
+    public List<Violation> getViolations() {
+
+        return violations;
+    }
+}
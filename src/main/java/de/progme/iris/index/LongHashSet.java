@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.index;
+
+/**
+ * An immutable open addressing hash set of longs without boxing.
+ */
+public final class LongHashSet {
+
+    private final long[] table;
+
+    private final int mask;
+
+    /**
+     * Whether 0 is in the set, because 0 marks an empty slot.
+     */
+    private final boolean hasZero;
+
+    private final int size;
+
+    /**
+     * Creates a new set of the given values.
+     *
+     * @param values The values, duplicates are allowed.
+     * @param count The number of values to use from the array.
+     */
+    public LongHashSet(long[] values, int count) {
+
+        int capacity = 16;
+        while (capacity < count * 2L) {
+            capacity <<= 1;
+        }
+
+        this.table = new long[capacity];
+        this.mask = capacity - 1;
+
+        boolean zero = false;
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            long value = values[i];
+            if (value == 0) {
+                if (!zero) {
+                    zero = true;
+                    distinct++;
+                }
+                continue;
+            }
+
+            int slot = slot(value);
+            while (table[slot] != 0 && table[slot] != value) {
+                slot = (slot + 1) & mask;
+            }
+            if (table[slot] == 0) {
+                table[slot] = value;
+                distinct++;
+            }
+        }
+
+        this.hasZero = zero;
+        this.size = distinct;
+    }
+
+    /**
+     * Returns whether the given value is in the set.
+     *
+     * @param value The value.
+     * @return True if the value is in the set.
+     */
+    public boolean contains(long value) {
+
+        if (value == 0) {
+            return hasZero;
+        }
+
+        int slot = slot(value);
+        long current;
+        while ((current = table[slot]) != 0) {
+            if (current == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the number of distinct values in the set.
+     *
+     * @return The number of values.
+     */
+    public int size() {
+
+        return size;
+    }
+
+    private int slot(long value) {
+
+        long hash = value * 0x9E3779B97F4A7C15L;
+
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.index;
+
+import java.util.*;
+
+/**
+ * An immutable index of names in sorted order which answers prefix and glob queries.
+ *
+ * A prefix query is a binary search for the first match followed by a scan over the matches only.
+ * A glob query scans the range of its literal prefix, so its cost depends on the part before the first wildcard.
+ *
+ * @param <V> The type of the values.
+ */
+public final class NameIndex<V> {
+
+    private final String[] names;
+
+    private final Object[] values;
+
+    private NameIndex(String[] names, Object[] values) {
+
+        this.names = names;
+        this.values = values;
+    }
+
+    /**
+     * Creates a new index of the given values.
+     *
+     * @param map The values by their name.
+     * @param <V> The type of the values.
+     * @return The index.
+     */
+    public static <V> NameIndex<V> of(Map<String, ? extends V> map) {
+
+        String[] names = map.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+
+        Object[] values = new Object[names.length];
+        for (int i = 0; i < names.length; i++) {
+            values[i] = map.get(names[i]);
+        }
+
+        return new NameIndex<>(names, values);
+    }
+
+    /**
+     * Returns the values whose names start with the given prefix in the order of their names.
+     *
+     * @param prefix The prefix.
+     * @return The values as an unmodifiable list.
+     */
+    public List<V> withPrefix(String prefix) {
+
+        List<V> result = new ArrayList<>();
+        for (int i = lowerBound(prefix); i < names.length && names[i].startsWith(prefix); i++) {
+            result.add(value(i));
+        }
+
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Returns the values whose names match the given glob in the order of their names.
+     *
+     * A * matches any number of characters and a ? matches exactly one character.
+     *
+     * @param glob The glob.
+     * @return The values as an unmodifiable list.
+     */
+    public List<V> matching(String glob) {
+
+        String prefix = literalPrefix(glob);
+        if (prefix.length() == glob.length()) {
+            int index = Arrays.binarySearch(names, glob);
+
+            return index >= 0 ? Collections.singletonList(value(index)) : Collections.emptyList();
+        }
+
+        List<V> result = new ArrayList<>();
+        for (int i = lowerBound(prefix); i < names.length && names[i].startsWith(prefix); i++) {
+            if (matches(glob, prefix.length(), names[i], prefix.length())) {
+                result.add(value(i));
+            }
+        }
+
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Returns the number of names in this index.
+     *
+     * @return The number of names.
+     */
+    public int size() {
+
+        return names.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int index) {
+
+        return (V) values[index];
+    }
+
+    /**
+     * Returns the index of the first name which is greater than or equal to the given name.
+     */
+    private int lowerBound(String name) {
+
+        int low = 0;
+        int high = names.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (names[middle].compareTo(name) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Returns whether the given string is a glob with at least one wildcard.
+     *
+     * @param glob The string.
+     * @return True if the string contains a * or a ?.
+     */
+    public static boolean isGlob(String glob) {
+
+        return literalPrefix(glob).length() != glob.length();
+    }
+
+    private static String literalPrefix(String glob) {
+
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                return glob.substring(0, i);
+            }
+        }
+
+        return glob;
+    }
+
+    /**
+     * Matches the glob against the name starting at the given positions, backtracking to the last *.
+     */
+    private static boolean matches(String glob, int g, String name, int n) {
+
+        int star = -1;
+        int mark = 0;
+        while (n < name.length()) {
+            if (g < glob.length() && (glob.charAt(g) == '?' || glob.charAt(g) == name.charAt(n))) {
+                g++;
+                n++;
+            } else if (g < glob.length() && glob.charAt(g) == '*') {
+                star = g++;
+                mark = n;
+            } else if (star != -1) {
+                g = star + 1;
+                n = ++mark;
+            } else {
+                return false;
+            }
+        }
+
+        while (g < glob.length() && glob.charAt(g) == '*') {
+            g++;
+        }
+
+        return g == glob.length();
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.index;
+
+import java.util.*;
+
+/**
+ * An immutable map from strings which uses a minimal perfect hash function (hash and displace, CHD style).
+ *
+ * The keys are split into buckets, every bucket gets a displacement seed which maps all of its keys
+ * to free slots of a table with exactly one slot per key. A lookup is one hash, one seed load and
+ * one array probe without any collision chains.
+ *
+ * @param <V> The type of the values.
+ */
+public final class PerfectHashMap<V> extends AbstractMap<String, V> {
+
+    /**
+     * The average number of keys per bucket.
+     */
+    private static final int BUCKET_SIZE = 4;
+
+    /**
+     * The maximum number of seeds which are tried for a single bucket.
+     */
+    private static final int MAX_SEED = 1 << 24;
+
+    private final String[] keys;
+
+    private final Object[] values;
+
+    private final int[] seeds;
+
+    /**
+     * Whether the full strong hash is used because some keys have the same string hash code.
+     */
+    private final boolean strong;
+
+    private Set<Entry<String, V>> entrySet;
+
+    private PerfectHashMap(String[] keys, Object[] values, int[] seeds, boolean strong) {
+
+        this.keys = keys;
+        this.values = values;
+        this.seeds = seeds;
+        this.strong = strong;
+    }
+
+    /**
+     * Creates a new perfect hash map with the entries of the given map.
+     *
+     * @param map The map to copy.
+     * @param <V> The type of the values.
+     * @return The perfect hash map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PerfectHashMap<V> of(Map<String, ? extends V> map) {
+
+        if (map instanceof PerfectHashMap) {
+            return (PerfectHashMap<V>) map;
+        }
+
+        int size = map.size();
+        String[] names = map.keySet().toArray(new String[size]);
+
+        Set<Integer> hashCodes = new HashSet<>(size * 2);
+        boolean strong = false;
+        for (String name : names) {
+            if (!hashCodes.add(name.hashCode())) {
+                strong = true;
+                break;
+            }
+        }
+
+        long[] hashes = new long[size];
+        for (int i = 0; i < size; i++) {
+            hashes[i] = hash(names[i], strong);
+        }
+
+        int bucketCount = Math.max(1, size / BUCKET_SIZE);
+        int[] seeds = new int[bucketCount];
+
+        // Groups the keys by bucket, larger buckets are placed first while the table is still empty
+        List<List<Integer>> buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new ArrayList<>(BUCKET_SIZE));
+        }
+        for (int i = 0; i < size; i++) {
+            buckets.get(bucket(hashes[i], bucketCount)).add(i);
+        }
+        Integer[] order = new Integer[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> buckets.get(b).size() - buckets.get(a).size());
+
+        String[] keys = new String[size];
+        Object[] values = new Object[size];
+        boolean[] taken = new boolean[size];
+        int[] slots = new int[BUCKET_SIZE * 4];
+
+        for (int bucket : order) {
+            List<Integer> members = buckets.get(bucket);
+            if (members.isEmpty()) {
+                break;
+            }
+            if (slots.length < members.size()) {
+                slots = new int[members.size()];
+            }
+
+            int seed = 0;
+            while (!place(members, hashes, seed, taken, slots)) {
+                if (++seed == MAX_SEED) {
+                    throw new IllegalStateException("could not build a perfect hash for " + size + " keys");
+                }
+            }
+
+            seeds[bucket] = seed;
+            for (int i = 0; i < members.size(); i++) {
+                int member = members.get(i);
+                keys[slots[i]] = names[member];
+                values[slots[i]] = map.get(names[member]);
+            }
+        }
+
+        return new PerfectHashMap<>(keys, values, seeds, strong);
+    }
+
+    /**
+     * Tries to place all keys of a bucket with the given seed.
+     *
+     * @return True if all keys got a free and distinct slot.
+     */
+    private static boolean place(List<Integer> members, long[] hashes, int seed, boolean[] taken, int[] slots) {
+
+        for (int i = 0; i < members.size(); i++) {
+            int slot = slot(hashes[members.get(i)], seed, taken.length);
+            if (taken[slot]) {
+                for (int j = 0; j < i; j++) {
+                    taken[slots[j]] = false;
+                }
+                return false;
+            }
+            taken[slot] = true;
+            slots[i] = slot;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the slot of the given key.
+     *
+     * @param key The key.
+     * @return The slot or -1 if the key can't be in this map.
+     */
+    private int index(String key) {
+
+        if (keys.length == 0) {
+            return -1;
+        }
+
+        long hash = hash(key, strong);
+        int slot = slot(hash, seeds[bucket(hash, seeds.length)], keys.length);
+
+        return keys[slot].equals(key) ? slot : -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+
+        if (!(key instanceof String)) {
+            return null;
+        }
+
+        int slot = index((String) key);
+
+        return slot != -1 ? (V) values[slot] : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+
+        return key instanceof String && index((String) key) != -1;
+    }
+
+    @Override
+    public int size() {
+
+        return keys.length;
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<String, V>>() {
+
+                @Override
+                public Iterator<Entry<String, V>> iterator() {
+
+                    return new Iterator<Entry<String, V>>() {
+
+                        private int index;
+
+                        @Override
+                        public boolean hasNext() {
+
+                            return index < keys.length;
+                        }
+
+                        @Override
+                        @SuppressWarnings("unchecked")
+                        public Entry<String, V> next() {
+
+                            if (index >= keys.length) {
+                                throw new NoSuchElementException();
+                            }
+
+                            int current = index++;
+
+                            return new SimpleImmutableEntry<>(keys[current], (V) values[current]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+
+                    return keys.length;
+                }
+            };
+        }
+
+        return entrySet;
+    }
+
+    private static long hash(String key, boolean strong) {
+
+        if (!strong) {
+            // The hash code is cached in the string, so lookups don't need to read the characters
+            return key.hashCode() * 0x9E3779B97F4A7C15L;
+        }
+
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+        }
+
+        return (hash ^ (hash >>> 32)) * 0x9E3779B97F4A7C15L;
+    }
+
+    private static int bucket(long hash, int bucketCount) {
+
+        return (int) (((hash >>> 32) * bucketCount) >>> 32);
+    }
+
+    private static int slot(long hash, int seed, int size) {
+
+        return (int) ((((hash ^ seed) * 0xC2B2AE3D27D4EB4FL) >>> 32) * size >>> 32);
+    }
+}
@@ -0,0 +1,548 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.index;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable map which is changed by creating new versions that share all unchanged nodes (a hash array mapped trie).
+ *
+ * Every level uses five bits of the hash to select one of up to 32 slots, a slot holds an entry or
+ * the node of the next level. An update copies only the nodes on the path to the changed entry,
+ * so keeping many versions costs about the size of the changes. The diff of two versions skips
+ * all shared nodes. Keys with the same full hash are stored in a collision node. Values must not be null.
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ */
+public final class PersistentMap<K, V> {
+
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+
+    private final Node root;
+
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the empty map.
+     *
+     * @param <K> The type of the keys.
+     * @param <V> The type of the values.
+     * @return The empty map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Returns the value of the given key.
+     *
+     * @param key The key.
+     * @return The value or null if the key is not mapped.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+
+        return root == null ? null : (V) root.get(key, hash(key), 0);
+    }
+
+    /**
+     * Returns whether the given key is mapped.
+     *
+     * @param key The key.
+     * @return True if the key is mapped.
+     */
+    public boolean containsKey(Object key) {
+
+        return get(key) != null;
+    }
+
+    /**
+     * Returns a map which maps the given key to the given value.
+     *
+     * @param key The key.
+     * @param value The value.
+     * @return The new map or this map if the key is mapped to the same value instance.
+     */
+    public PersistentMap<K, V> put(K key, V value) {
+
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+
+        int[] added = new int[1];
+        Node node = root == null
+                ? new BitmapNode(0, new Object[0]).put(key, value, hash(key), 0, added)
+                : root.put(key, value, hash(key), 0, added);
+
+        return node == root ? this : new PersistentMap<>(node, size + added[0]);
+    }
+
+    /**
+     * Returns a map without the given key.
+     *
+     * @param key The key.
+     * @return The new map or this map if the key is not mapped.
+     */
+    public PersistentMap<K, V> remove(Object key) {
+
+        if (root == null) {
+            return this;
+        }
+
+        Node node = root.remove(key, hash(key), 0);
+        if (node == root) {
+            return this;
+        }
+
+        return node == null ? empty() : new PersistentMap<>(node, size - 1);
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * Returns whether the map has no entries.
+     *
+     * @return True if the map is empty.
+     */
+    public boolean isEmpty() {
+
+        return size == 0;
+    }
+
+    /**
+     * Calls the given action for every entry.
+     *
+     * @param action The action.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+
+        if (root != null) {
+            root.forEach((BiConsumer<Object, Object>) action);
+        }
+    }
+
+    /**
+     * Reports the differences from this map to the given map.
+     *
+     * Nodes which both maps share are skipped, so the cost depends on the number of changes.
+     * Values are compared by identity first and then with equals.
+     *
+     * @param other The other map.
+     * @param differ The receiver of the differences.
+     */
+    public void diff(PersistentMap<K, V> other, Differ<K, V> differ) {
+
+        diff(root, other.root, 0, differ);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> void diff(Node from, Node to, int shift, Differ<K, V> differ) {
+
+        if (from == to) {
+            return;
+        }
+
+        if (from instanceof BitmapNode && to instanceof BitmapNode) {
+            BitmapNode a = (BitmapNode) from;
+            BitmapNode b = (BitmapNode) to;
+            for (int bits = a.bitmap | b.bitmap; bits != 0; bits &= bits - 1) {
+                int bit = bits & -bits;
+                Object[] slotA = a.slot(bit);
+                Object[] slotB = b.slot(bit);
+                if (slotA != null && slotB != null && slotA[0] == null && slotB[0] == null) {
+                    diff((Node) slotA[1], (Node) slotB[1], shift + 5, differ);
+                } else {
+                    diff(entries(slotA), entries(slotB), differ);
+                }
+            }
+
+            return;
+        }
+
+        diff(entries(from), entries(to), differ);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> void diff(Map<Object, Object> from, Map<Object, Object> to, Differ<K, V> differ) {
+
+        for (Map.Entry<Object, Object> entry : from.entrySet()) {
+            Object value = to.get(entry.getKey());
+            if (value == null) {
+                differ.changed((K) entry.getKey(), (V) entry.getValue(), null);
+            } else if (value != entry.getValue() && !value.equals(entry.getValue())) {
+                differ.changed((K) entry.getKey(), (V) entry.getValue(), (V) value);
+            }
+        }
+        for (Map.Entry<Object, Object> entry : to.entrySet()) {
+            if (!from.containsKey(entry.getKey())) {
+                differ.changed((K) entry.getKey(), null, (V) entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the entries of a slot, which is a key and a value or null and a node.
+     */
+    private static Map<Object, Object> entries(Object[] slot) {
+
+        if (slot == null) {
+            return new HashMap<>();
+        }
+        if (slot[0] == null) {
+            return entries((Node) slot[1]);
+        }
+
+        Map<Object, Object> entries = new HashMap<>(2);
+        entries.put(slot[0], slot[1]);
+
+        return entries;
+    }
+
+    private static Map<Object, Object> entries(Node node) {
+
+        Map<Object, Object> entries = new HashMap<>();
+        if (node != null) {
+            node.forEach(entries::put);
+        }
+
+        return entries;
+    }
+
+    private static int hash(Object key) {
+
+        int hash = key.hashCode();
+
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Creates the node which holds two entries whose hashes are equal up to the given shift.
+     */
+    private static Node node(int shift, Object key1, Object value1, int hash1, Object key2, Object value2, int hash2) {
+
+        if (shift >= 32) {
+            return new CollisionNode(hash1, new Object[]{key1, value1, key2, value2});
+        }
+
+        int bit1 = 1 << ((hash1 >>> shift) & 31);
+        int bit2 = 1 << ((hash2 >>> shift) & 31);
+        if (bit1 == bit2) {
+            return new BitmapNode(bit1, new Object[]{null, node(shift + 5, key1, value1, hash1, key2, value2, hash2)});
+        }
+
+        return Integer.compareUnsigned(bit1, bit2) < 0
+                ? new BitmapNode(bit1 | bit2, new Object[]{key1, value1, key2, value2})
+                : new BitmapNode(bit1 | bit2, new Object[]{key2, value2, key1, value1});
+    }
+
+    /**
+     * Receives the differences between two maps.
+     *
+     * @param <K> The type of the keys.
+     * @param <V> The type of the values.
+     */
+    @FunctionalInterface
+    public interface Differ<K, V> {
+
+        /**
+         * Called for every key which is added, removed or mapped to a different value.
+         *
+         * @param key The key.
+         * @param from The old value or null if the key was added.
+         * @param to The new value or null if the key was removed.
+         */
+        void changed(K key, V from, V to);
+    }
+
+    private abstract static class Node {
+
+        abstract Object get(Object key, int hash, int shift);
+
+        abstract Node put(Object key, Object value, int hash, int shift, int[] added);
+
+        /**
+         * Returns the node without the key, this node if the key is missing or null if the node is empty.
+         */
+        abstract Node remove(Object key, int hash, int shift);
+
+        abstract void forEach(BiConsumer<Object, Object> action);
+    }
+
+    /**
+     * A node with up to 32 slots, the bitmap marks the used slots and the array stores them densely.
+     */
+    private static final class BitmapNode extends Node {
+
+        private final int bitmap;
+
+        /**
+         * A key and a value or null and a child node per used slot.
+         */
+        private final Object[] array;
+
+        private BitmapNode(int bitmap, Object[] array) {
+
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+
+            return Integer.bitCount(bitmap & (bit - 1)) * 2;
+        }
+
+        private Object[] slot(int bit) {
+
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+
+            int index = index(bit);
+
+            return new Object[]{array[index], array[index + 1]};
+        }
+
+        @Override
+        Object get(Object key, int hash, int shift) {
+
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+
+            int index = index(bit);
+            if (array[index] == null) {
+                return ((Node) array[index + 1]).get(key, hash, shift + 5);
+            }
+
+            return key.equals(array[index]) ? array[index + 1] : null;
+        }
+
+        @Override
+        Node put(Object key, Object value, int hash, int shift, int[] added) {
+
+            int bit = 1 << ((hash >>> shift) & 31);
+            int index = index(bit);
+
+            if ((bitmap & bit) == 0) {
+                Object[] copy = new Object[array.length + 2];
+                System.arraycopy(array, 0, copy, 0, index);
+                copy[index] = key;
+                copy[index + 1] = value;
+                System.arraycopy(array, index, copy, index + 2, array.length - index);
+                added[0] = 1;
+
+                return new BitmapNode(bitmap | bit, copy);
+            }
+
+            Object current = array[index];
+            Object replacement;
+            if (current == null) {
+                Node child = (Node) array[index + 1];
+                replacement = child.put(key, value, hash, shift + 5, added);
+                if (replacement == child) {
+                    return this;
+                }
+            } else if (key.equals(current)) {
+                if (array[index + 1] == value) {
+                    return this;
+                }
+
+                Object[] copy = array.clone();
+                copy[index + 1] = value;
+
+                return new BitmapNode(bitmap, copy);
+            } else {
+                replacement = node(shift + 5, current, array[index + 1], hash(current), key, value, hash);
+                added[0] = 1;
+            }
+
+            Object[] copy = array.clone();
+            copy[index] = null;
+            copy[index + 1] = replacement;
+
+            return new BitmapNode(bitmap, copy);
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift) {
+
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+
+            int index = index(bit);
+            Object current = array[index];
+            if (current == null) {
+                Node child = (Node) array[index + 1];
+                Node replacement = child.remove(key, hash, shift + 5);
+                if (replacement == child) {
+                    return this;
+                }
+                if (replacement != null) {
+                    Object[] copy = array.clone();
+                    if (replacement instanceof BitmapNode && ((BitmapNode) replacement).array.length == 2
+                            && ((BitmapNode) replacement).array[0] != null) {
+                        // A single entry moves up, so equal maps keep the same shape
+                        copy[index] = ((BitmapNode) replacement).array[0];
+                        copy[index + 1] = ((BitmapNode) replacement).array[1];
+                    } else {
+                        copy[index + 1] = replacement;
+                    }
+
+                    return new BitmapNode(bitmap, copy);
+                }
+            } else if (!key.equals(current)) {
+                return this;
+            }
+
+            if (array.length == 2) {
+                return null;
+            }
+
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, index);
+            System.arraycopy(array, index + 2, copy, index, array.length - index - 2);
+
+            return new BitmapNode(bitmap ^ bit, copy);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node) array[i + 1]).forEach(action);
+                } else {
+                    action.accept(array[i], array[i + 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * A node with keys whose full hashes are equal.
+     */
+    private static final class CollisionNode extends Node {
+
+        private final int hash;
+
+        /**
+         * The keys and values.
+         */
+        private final Object[] array;
+
+        private CollisionNode(int hash, Object[] array) {
+
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int indexOf(Object key) {
+
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        @Override
+        Object get(Object key, int hash, int shift) {
+
+            int index = indexOf(key);
+
+            return index == -1 ? null : array[index + 1];
+        }
+
+        @Override
+        Node put(Object key, Object value, int hash, int shift, int[] added) {
+
+            int index = indexOf(key);
+            if (index != -1) {
+                if (array[index + 1] == value) {
+                    return this;
+                }
+
+                Object[] copy = array.clone();
+                copy[index + 1] = value;
+
+                return new CollisionNode(this.hash, copy);
+            }
+
+            Object[] copy = new Object[array.length + 2];
+            System.arraycopy(array, 0, copy, 0, array.length);
+            copy[array.length] = key;
+            copy[array.length + 1] = value;
+            added[0] = 1;
+
+            return new CollisionNode(this.hash, copy);
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift) {
+
+            int index = indexOf(key);
+            if (index == -1) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, index);
+            System.arraycopy(array, index + 2, copy, index, array.length - index - 2);
+
+            return new CollisionNode(this.hash, copy);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+
+            for (int i = 0; i < array.length; i += 2) {
+                action.accept(array[i], array[i + 1]);
+            }
+        }
+    }
+}
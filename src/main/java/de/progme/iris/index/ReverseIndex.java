@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.index;
+
+import de.progme.iris.config.Header;
+import de.progme.iris.config.HeaderListener;
+import de.progme.iris.config.Key;
+import de.progme.iris.config.KeyListener;
+import de.progme.iris.config.Value;
+
+import java.util.*;
+
+/**
+ * An index from values to their locations, so a value lookup is a single hash probe instead of a full scan.
+ *
+ * Every value is indexed by its raw string, values which are integers are also indexed by their number,
+ * so 080 and 80 are found by the number 80. The index listens to its headers and keys and is updated
+ * if keys are added or values change. References are indexed as they are written, not resolved.
+ */
+public final class ReverseIndex implements HeaderListener, KeyListener {
+
+    private final Map<String, List<ValueLocation>> byString = new HashMap<>();
+
+    private final Map<Long, List<ValueLocation>> byNumber = new HashMap<>();
+
+    /**
+     * The indexed locations of every key, to remove them if the key changes.
+     */
+    private final Map<Key, List<ValueLocation>> byKey = new IdentityHashMap<>();
+
+    /**
+     * The header of every indexed key.
+     */
+    private final Map<Key, Header> owners = new IdentityHashMap<>();
+
+    private ReverseIndex() {
+
+    }
+
+    /**
+     * Builds the index over the given headers and attaches it to them.
+     *
+     * @param headers The headers.
+     * @return The attached index.
+     */
+    public static ReverseIndex build(Collection<Header> headers) {
+
+        ReverseIndex index = new ReverseIndex();
+        for (Header header : headers) {
+            header.addListener(index);
+            for (Key key : header.getKeys()) {
+                if (header.isInherited(key)) {
+                    // Indexed once at the header which defines it
+                    continue;
+                }
+                key.addListener(index);
+                index.add(header, key);
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Returns the locations of the given raw value.
+     *
+     * @param value The raw value.
+     * @return The locations as an unmodifiable list.
+     */
+    public List<ValueLocation> find(String value) {
+
+        return unmodifiable(byString.get(value));
+    }
+
+    /**
+     * Returns the locations of the values which are the given integer.
+     *
+     * @param value The integer.
+     * @return The locations as an unmodifiable list.
+     */
+    public List<ValueLocation> find(long value) {
+
+        return unmodifiable(byNumber.get(value));
+    }
+
+    @Override
+    public void keyAdded(Header header, Key key, Key replaced) {
+
+        // An inherited key belongs to the parent, a child which overrides it keeps it indexed there
+        if (replaced != null && !header.isInherited(replaced)) {
+            replaced.removeListener(this);
+            remove(replaced);
+        }
+
+        if (!header.isInherited(key)) {
+            key.addListener(this);
+            add(header, key);
+        }
+    }
+
+    @Override
+    public void keyChanged(Key key) {
+
+        Header header = owners.get(key);
+        if (header != null) {
+            remove(key);
+            add(header, key);
+        }
+    }
+
+    private void add(Header header, Key key) {
+
+        List<Value> values = key.getValues();
+        List<ValueLocation> locations = new ArrayList<>(values.size());
+
+        for (int i = 0; i < values.size(); i++) {
+            String raw = values.get(i).asRawString();
+            ValueLocation location = new ValueLocation(header, key, i, raw);
+            locations.add(location);
+
+            byString.computeIfAbsent(raw, k -> new ArrayList<>(1)).add(location);
+            if (isInteger(raw)) {
+                try {
+                    byNumber.computeIfAbsent(Long.parseLong(raw), k -> new ArrayList<>(1)).add(location);
+                } catch (NumberFormatException ignored) {
+                    // Too large for a long, only indexed as a string
+                }
+            }
+        }
+
+        byKey.put(key, locations);
+        owners.put(key, header);
+    }
+
+    private void remove(Key key) {
+
+        owners.remove(key);
+
+        List<ValueLocation> locations = byKey.remove(key);
+        if (locations == null) {
+            return;
+        }
+
+        for (ValueLocation location : locations) {
+            remove(byString, location.getValue(), location);
+            if (isInteger(location.getValue())) {
+                try {
+                    remove(byNumber, Long.parseLong(location.getValue()), location);
+                } catch (NumberFormatException ignored) {
+                    // Was never indexed as a number
+                }
+            }
+        }
+    }
+
+    private static <K> void remove(Map<K, List<ValueLocation>> map, K value, ValueLocation location) {
+
+        List<ValueLocation> locations = map.get(value);
+        if (locations != null) {
+            locations.remove(location);
+            if (locations.isEmpty()) {
+                map.remove(value);
+            }
+        }
+    }
+
+    private static boolean isInteger(String value) {
+
+        int start = value.startsWith("-") || value.startsWith("+") ? 1 : 0;
+        if (start == value.length()) {
+            return false;
+        }
+
+        for (int i = start; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static List<ValueLocation> unmodifiable(List<ValueLocation> locations) {
+
+        return locations != null ? Collections.unmodifiableList(locations) : Collections.emptyList();
+    }
+}
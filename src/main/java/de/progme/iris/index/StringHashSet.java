@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.index;
+
+/**
+ * An immutable open addressing hash set of strings with their hash codes stored next to them,
+ * so most mismatches are rejected without comparing characters.
+ */
+public final class StringHashSet {
+
+    private final String[] table;
+
+    private final int[] hashes;
+
+    private final int mask;
+
+    private final int size;
+
+    /**
+     * Creates a new set of the given values.
+     *
+     * @param values The values, duplicates are allowed.
+     * @param count The number of values to use from the array.
+     */
+    public StringHashSet(String[] values, int count) {
+
+        int capacity = 16;
+        while (capacity < count * 2L) {
+            capacity <<= 1;
+        }
+
+        this.table = new String[capacity];
+        this.hashes = new int[capacity];
+        this.mask = capacity - 1;
+
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            String value = values[i];
+            int hash = value.hashCode();
+            int slot = slot(hash);
+            while (table[slot] != null && !(hashes[slot] == hash && table[slot].equals(value))) {
+                slot = (slot + 1) & mask;
+            }
+            if (table[slot] == null) {
+                table[slot] = value;
+                hashes[slot] = hash;
+                distinct++;
+            }
+        }
+
+        this.size = distinct;
+    }
+
+    /**
+     * Returns whether the given value is in the set.
+     *
+     * @param value The value.
+     * @return True if the value is in the set.
+     */
+    public boolean contains(String value) {
+
+        int hash = value.hashCode();
+        int slot = slot(hash);
+        String current;
+        while ((current = table[slot]) != null) {
+            if (hashes[slot] == hash && current.equals(value)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the number of distinct values in the set.
+     *
+     * @return The number of values.
+     */
+    public int size() {
+
+        return size;
+    }
+
+    private int slot(int hash) {
+
+        hash *= 0x9E3779B9;
+
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.index;
+
+import de.progme.iris.config.Header;
+import de.progme.iris.config.Key;
+
+/**
+ * The location of a value in a config.
+ */
+public final class ValueLocation {
+
+    private final Header header;
+
+    private final Key key;
+
+    private final int position;
+
+    private final String value;
+
+    /**
+     * Creates a new value location.
+     *
+     * @param header The header.
+     * @param key The key.
+     * @param position The position of the value in the key.
+     * @param value The raw value.
+     */
+    public ValueLocation(Header header, Key key, int position, String value) {
+
+        this.header = header;
+        this.key = key;
+        this.position = position;
+        this.value = value;
+    }
+
+    /**
+     * Returns the header of the value.
+     *
+     * @return The header.
+     */
+    public Header getHeader() {
+
+        return header;
+    }
+
+    /**
+     * Returns the key of the value.
+     *
+     * @return The key.
+     */
+    public Key getKey() {
+
+        return key;
+    }
+
+    /**
+     * Returns the position of the value in its key.
+     *
+     * @return The position, starting at 0.
+     */
+    public int getPosition() {
+
+        return position;
+    }
+
+    /**
+     * Returns the raw value.
+     *
+     * @return The raw value.
+     */
+    public String getValue() {
+
+        return value;
+    }
+
+    @Override
+    public String toString() {
+
+        return header.getName() + "." + key.getName() + "[" + position + "] = " + value;
+    }
+}
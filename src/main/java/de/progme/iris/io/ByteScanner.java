@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Finds bytes in an array eight at a time.
+ *
+ * Eight bytes are loaded as one little endian long and compared at once with the SWAR
+ * (SIMD within a register) zero byte test: for x = word ^ (pattern * 0x0101010101010101),
+ * (x - 0x0101010101010101) &amp; ~x &amp; 0x8080808080808080 has the high bit set in the lowest byte
+ * which is zero, so its trailing zeros locate the first match. The remaining bytes at the end are
+ * compared one by one. Setting the system property iris.scalar to true compares all bytes one by one,
+ * both ways give the same results.
+ */
+public final class ByteScanner {
+
+    /**
+     * Whether every byte is compared one by one.
+     */
+    static final boolean SCALAR = Boolean.getBoolean("iris.scalar");
+
+    private static final long ONES = 0x0101010101010101L;
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private static final long NEW_LINES = ONES * '\n';
+
+    private static final long CARRIAGE_RETURNS = ONES * '\r';
+
+    private final byte[] bytes;
+
+    /**
+     * The little endian view of the bytes which loads eight of them at once.
+     */
+    private final ByteBuffer words;
+
+    /**
+     * Creates a new scanner for the given bytes.
+     *
+     * @param bytes The bytes.
+     */
+    public ByteScanner(byte[] bytes) {
+
+        this.bytes = bytes;
+        this.words = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns the bytes of this scanner.
+     *
+     * @return The bytes.
+     */
+    public byte[] getBytes() {
+
+        return bytes;
+    }
+
+    /**
+     * Returns the index of the first given byte in the range.
+     *
+     * @param value The byte.
+     * @param start The start of the range.
+     * @param end The end of the range, exclusive.
+     * @return The index or the end if the byte is not in the range.
+     */
+    public int indexOf(byte value, int start, int end) {
+
+        if (!SCALAR) {
+            long pattern = ONES * (value & 0xFF);
+            for (; start + 8 <= end; start += 8) {
+                long found = zeros(words.getLong(start) ^ pattern);
+                if (found != 0) {
+                    return start + (Long.numberOfTrailingZeros(found) >>> 3);
+                }
+            }
+        }
+
+        return indexOf(bytes, value, start, end);
+    }
+
+    /**
+     * Returns the index of the first \n or \r in the range.
+     *
+     * @param start The start of the range.
+     * @param end The end of the range, exclusive.
+     * @return The index or the end if there is no line terminator in the range.
+     */
+    public int indexOfLineEnd(int start, int end) {
+
+        if (!SCALAR) {
+            for (; start + 8 <= end; start += 8) {
+                long word = words.getLong(start);
+                long found = zeros(word ^ NEW_LINES) | zeros(word ^ CARRIAGE_RETURNS);
+                if (found != 0) {
+                    return start + (Long.numberOfTrailingZeros(found) >>> 3);
+                }
+            }
+        }
+
+        return indexOfLineEnd(bytes, start, end);
+    }
+
+    /**
+     * Returns the index of the first given byte in the range, comparing one byte at a time.
+     *
+     * @param bytes The bytes.
+     * @param value The byte.
+     * @param start The start of the range.
+     * @param end The end of the range, exclusive.
+     * @return The index or the end if the byte is not in the range.
+     */
+    public static int indexOf(byte[] bytes, byte value, int start, int end) {
+
+        while (start < end && bytes[start] != value) {
+            start++;
+        }
+
+        return start;
+    }
+
+    /**
+     * Returns the index of the first \n or \r in the range, comparing one byte at a time.
+     *
+     * @param bytes The bytes.
+     * @param start The start of the range.
+     * @param end The end of the range, exclusive.
+     * @return The index or the end if there is no line terminator in the range.
+     */
+    public static int indexOfLineEnd(byte[] bytes, int start, int end) {
+
+        while (start < end && bytes[start] != '\n' && bytes[start] != '\r') {
+            start++;
+        }
+
+        return start;
+    }
+
+    /**
+     * Returns a word with the high bit set in the lowest zero byte of the given word.
+     * Bytes above it may be marked wrongly because of the borrow, but never bytes below it.
+     */
+    private static long zeros(long word) {
+
+        return (word - ONES) & ~word & HIGH_BITS;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.io;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Opens config files which may be gzip compressed.
+ *
+ * A file is compressed if its name ends with .gz or it starts with the gzip magic bytes.
+ * Compressed files are inflated while they are read, no temporary files are written.
+ */
+public final class ConfigFiles {
+
+    /**
+     * The size of the inflater and deflater buffers. The default of 512 bytes
+     * needs a native call for every few lines of a highly compressed config.
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The maximum size which is allocated up front from the size stored in the gzip trailer.
+     */
+    private static final int MAX_SIZE_HINT = 256 * 1024 * 1024;
+
+    private ConfigFiles() {
+
+    }
+
+    /**
+     * Returns whether the given file is gzip compressed.
+     *
+     * @param file The file.
+     * @return True if the name ends with .gz or the file starts with the gzip magic bytes.
+     * @throws IOException If the file could not be read.
+     */
+    public static boolean isCompressed(File file) throws IOException {
+
+        if (file.getName().endsWith(".gz")) {
+            return true;
+        }
+
+        try (InputStream in = new FileInputStream(file)) {
+            return in.read() == 0x1F && in.read() == 0x8B;
+        }
+    }
+
+    /**
+     * Reads the whole content of the given file and inflates it if it is compressed.
+     *
+     * @param file The file.
+     * @return The uncompressed content.
+     * @throws IOException If the file could not be read.
+     */
+    public static byte[] readAllBytes(File file) throws IOException {
+
+        if (!isCompressed(file)) {
+            return Files.readAllBytes(file.toPath());
+        }
+
+        byte[] content = new byte[sizeHint(file)];
+        int length = 0;
+        try (InputStream in = new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE)) {
+            while (true) {
+                if (length == content.length) {
+                    // The hint is only exact for a single member smaller than 4 GiB
+                    int next = in.read();
+                    if (next == -1) {
+                        break;
+                    }
+                    content = Arrays.copyOf(content, Math.max(content.length * 2, BUFFER_SIZE));
+                    content[length++] = (byte) next;
+                }
+                int read = in.read(content, length, content.length - length);
+                if (read == -1) {
+                    break;
+                }
+                length += read;
+            }
+        }
+
+        return length == content.length ? content : Arrays.copyOf(content, length);
+    }
+
+    /**
+     * Opens the given file for reading and inflates it if it is compressed.
+     *
+     * @param file The file.
+     * @return The input stream of the uncompressed content.
+     * @throws IOException If the file could not be opened.
+     */
+    public static InputStream newInputStream(File file) throws IOException {
+
+        InputStream in = new FileInputStream(file);
+
+        return isCompressed(file) ? new GZIPInputStream(in, BUFFER_SIZE) : new BufferedInputStream(in, BUFFER_SIZE);
+    }
+
+    /**
+     * Opens the given file for writing and deflates the output if requested.
+     *
+     * @param file The file.
+     * @param compress True if the output should be gzip compressed.
+     * @return The output stream.
+     * @throws IOException If the file could not be opened.
+     */
+    public static OutputStream newOutputStream(File file, boolean compress) throws IOException {
+
+        OutputStream out = new FileOutputStream(file);
+
+        return compress ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
+    }
+
+    /**
+     * Returns the uncompressed size stored in the last four bytes of a gzip file.
+     */
+    private static int sizeHint(File file) throws IOException {
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            if (randomAccessFile.length() < 4) {
+                return BUFFER_SIZE;
+            }
+            randomAccessFile.seek(randomAccessFile.length() - 4);
+            int size = Integer.reverseBytes(randomAccessFile.readInt());
+
+            return size > 0 && size <= MAX_SIZE_HINT ? size : BUFFER_SIZE;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.offheap;
+
+import de.progme.iris.config.Header;
+import de.progme.iris.config.Key;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A header which looks up its keys in an off-heap store on demand.
+ */
+final class OffHeapHeader extends Header {
+
+    private final OffHeapStore store;
+
+    private final int offset;
+
+    /**
+     * The default keys of this header or null.
+     */
+    private final Header defaults;
+
+    OffHeapHeader(OffHeapStore store, int offset, Header defaults) {
+
+        super(store.headerName(offset), store.headerLine(offset));
+
+        this.store = store;
+        this.offset = offset;
+        this.defaults = defaults;
+    }
+
+    @Override
+    public void addKey(Key key) {
+
+        throw new UnsupportedOperationException("off-heap configs are read only");
+    }
+
+    @Override
+    public boolean hasKey(String key) {
+
+        return store.findKey(offset, key) != -1 || (defaults != null && defaults.hasKey(key));
+    }
+
+    @Override
+    public Key getKey(String key) {
+
+        int found = store.findKey(offset, key);
+        if (found == -1 || (defaults != null && store.valueCount(found) == 0 && defaults.hasKey(key))) {
+            return defaults != null ? defaults.getKey(key) : null;
+        }
+
+        return new OffHeapKey(store, found);
+    }
+
+    @Override
+    public List<Key> getKeys() {
+
+        List<Key> keys = new ArrayList<>();
+
+        int key = store.firstKey(offset);
+        for (int i = store.keyCount(offset); i > 0; i--) {
+            String name = store.keyName(key);
+            // Skip keys which are replaced by a later key with the same name
+            if (store.findKey(offset, name) == key) {
+                keys.add(getKey(name));
+            }
+            key = store.nextKey(key);
+        }
+
+        if (defaults != null) {
+            for (Key defaultKey : defaults.getKeys()) {
+                if (store.findKey(offset, defaultKey.getName()) == -1) {
+                    keys.add(defaultKey);
+                }
+            }
+        }
+
+        return Collections.unmodifiableList(keys);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.offheap;
+
+import de.progme.iris.Iris;
+import de.progme.iris.IrisConfig;
+import de.progme.iris.config.Header;
+import de.progme.iris.exception.IrisException;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.*;
+
+/**
+ * An iris config which stores its headers, keys and values in direct memory.
+ *
+ * Headers, keys and values are materialized on demand as thin objects over the store,
+ * so the java heap does not grow with the size of the config file. The config is read only.
+ */
+public class OffHeapIrisConfig extends IrisConfig {
+
+    /**
+     * The off-heap store.
+     */
+    private OffHeapStore store;
+
+    /**
+     * The default headers from the builder.
+     */
+    private Map<String, Header> defaults = new HashMap<>();
+
+    /**
+     * Creates a new off-heap iris config from the given file and builder instance.
+     *
+     * @param file The file.
+     * @param irisBuilder The builder instance.
+     * @throws IrisException If something went wrong.
+     */
+    public OffHeapIrisConfig(File file, Iris.IrisBuilder irisBuilder) throws IrisException {
+
+        if (irisBuilder.isInterpolate()) {
+            throw new IrisException("interpolation is not supported by off-heap configs");
+        }
+
+        if (irisBuilder.isFreeze()) {
+            throw new IrisException("freezing is not supported by off-heap configs");
+        }
+
+        if (irisBuilder.isReverseIndex()) {
+            throw new IrisException("reverse indexes are not supported by off-heap configs");
+        }
+
+        this.store = OffHeapStore.load(file, irisBuilder.getHeaderFilter());
+
+        for (Header header : irisBuilder.getHeaders()) {
+            defaults.put(header.getName(), header);
+        }
+
+        // Values are materialized on demand, so the schema can only validate them
+        if (irisBuilder.getSchema() != null) {
+            irisBuilder.getSchema().apply(this);
+        }
+    }
+
+    @Override
+    public void save() {
+
+        throw new UnsupportedOperationException("off-heap configs are read only");
+    }
+
+    @Override
+    public void save(OutputStream out) {
+
+        throw new UnsupportedOperationException("off-heap configs are read only");
+    }
+
+    @Override
+    public boolean hasHeader(String header) {
+
+        return store.findHeader(header) != -1 || defaults.containsKey(header);
+    }
+
+    @Override
+    public boolean hasHeaderAndKey(String header, String key) {
+
+        Header found = getHeader(header);
+
+        return found != null && found.hasKey(key);
+    }
+
+    @Override
+    public Header getHeader(String header) {
+
+        int offset = store.findHeader(header);
+        if (offset == -1) {
+            return defaults.get(header);
+        }
+
+        return new OffHeapHeader(store, offset, defaults.get(header));
+    }
+
+    @Override
+    public List<Header> getHeaders() {
+
+        List<Header> headers = new ArrayList<>();
+        for (int offset : store.headers()) {
+            headers.add(new OffHeapHeader(store, offset, defaults.get(store.headerName(offset))));
+        }
+        for (Header header : defaults.values()) {
+            if (store.findHeader(header.getName()) == -1) {
+                headers.add(header);
+            }
+        }
+
+        return Collections.unmodifiableList(headers);
+    }
+
+    /**
+     * Returns the number of bytes the config uses in direct memory.
+     *
+     * @return The number of bytes.
+     */
+    public long getOffHeapSize() {
+
+        return store.size();
+    }
+
+    /**
+     * Returns the number of keys in the config file.
+     *
+     * @return The number of keys.
+     */
+    public int getKeyCount() {
+
+        return store.getKeyCount();
+    }
+
+    /**
+     * Returns the number of values in the config file.
+     *
+     * @return The number of values.
+     */
+    public int getValueCount() {
+
+        return store.getValueCount();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.offheap;
+
+import de.progme.iris.config.Key;
+import de.progme.iris.config.Value;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * A key which reads its values from an off-heap store on demand.
+ */
+final class OffHeapKey extends Key {
+
+    private final OffHeapStore store;
+
+    private final int offset;
+
+    OffHeapKey(OffHeapStore store, int offset) {
+
+        super(store.keyName(offset), store.keyLine(offset));
+
+        this.store = store;
+        this.offset = offset;
+    }
+
+    @Override
+    public void addValue(Value value) {
+
+        throw new UnsupportedOperationException("off-heap configs are read only");
+    }
+
+    @Override
+    public void setValue(int index, Value value) {
+
+        throw new UnsupportedOperationException("off-heap configs are read only");
+    }
+
+    @Override
+    public void removeValue(int index) {
+
+        throw new UnsupportedOperationException("off-heap configs are read only");
+    }
+
+    @Override
+    public Value getValue(int index) {
+
+        return new Value(store.string(store.value(offset, index)));
+    }
+
+    @Override
+    public boolean hasValues() {
+
+        return store.valueCount(offset) > 0;
+    }
+
+    @Override
+    public Value next() {
+
+        return getValue(store.next(offset));
+    }
+
+    @Override
+    public List<Value> getValues() {
+
+        return new AbstractList<Value>() {
+
+            @Override
+            public Value get(int index) {
+
+                return getValue(index);
+            }
+
+            @Override
+            public int size() {
+
+                return store.valueCount(offset);
+            }
+        };
+    }
+}
@@ -0,0 +1,551 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.offheap;
+
+import de.progme.iris.exception.IrisException;
+import de.progme.iris.exception.IrisInvalidConfigException;
+import de.progme.iris.exception.IrisLoadConfigException;
+import de.progme.iris.io.ConfigFiles;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Predicate;
+
+/**
+ * Stores the headers, keys and values of a config in direct memory outside of the java heap.
+ *
+ * The records are written in file order into one buffer:
+ * <pre>
+ * header: hash, line, name length, name, key count
+ * key:    hash, header offset, line, end offset, next index, name length, name, value count, value offsets, values
+ * value:  length, bytes
+ * </pre>
+ * Headers and keys are found through open addressing hash tables which are stored off heap too.
+ */
+final class OffHeapStore {
+
+    private static final int HEADER_NAME = 12;
+
+    private static final int KEY_HEADER = 4;
+
+    private static final int KEY_LINE = 8;
+
+    private static final int KEY_END = 12;
+
+    private static final int KEY_NEXT = 16;
+
+    private static final int KEY_NAME = 20;
+
+    /**
+     * The records of the headers, keys and values.
+     */
+    private ByteBuffer data;
+
+    /**
+     * The header hash table with record offset + 1 per slot, 0 marks an empty slot.
+     */
+    private ByteBuffer headerTable;
+
+    /**
+     * The key hash table with record offset + 1 per slot, 0 marks an empty slot.
+     */
+    private ByteBuffer keyTable;
+
+    private int headerMask;
+
+    private int keyMask;
+
+    private int headerCount;
+
+    private int keyCount;
+
+    private int valueCount;
+
+    /**
+     * The number of bytes of the records, counted while measuring.
+     */
+    private long size;
+
+    private OffHeapStore() {
+
+    }
+
+    /**
+     * Loads the given config file into a new store.
+     *
+     * @param file The config file.
+     * @param headerFilter The filter of the headers which are stored or null to store all headers.
+     * @return The store.
+     * @throws IrisException If the file could not be loaded or is invalid.
+     */
+    static OffHeapStore load(File file, Predicate<String> headerFilter) throws IrisException {
+
+        // Measures the records first, so the direct memory is reserved once instead of doubling the buffer
+        OffHeapStore store = new OffHeapStore();
+        store.read(file, headerFilter);
+        if (store.size > Integer.MAX_VALUE) {
+            throw new IrisLoadConfigException("config is too large for an off-heap store");
+        }
+
+        store.data = allocate((int) store.size);
+        store.headerCount = store.keyCount = store.valueCount = 0;
+        store.read(file, headerFilter);
+
+        store.data.flip();
+        store.index();
+
+        return store;
+    }
+
+    /**
+     * Reads the records of the given file, they are only measured if no buffer is allocated yet.
+     */
+    private void read(File file, Predicate<String> headerFilter) throws IrisException {
+
+        int header = -1;
+        boolean skipping = false;
+        try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(ConfigFiles.newInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = bufferedReader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                line = line.trim();
+                if (line.endsWith(":")) {
+                    if (line.indexOf('<') != -1) {
+                        throw new IrisInvalidConfigException("line " + lineNumber + ": header inheritance is not supported off heap", lineNumber);
+                    }
+                    String name = line.substring(0, line.length() - 1).trim();
+                    skipping = headerFilter != null && !headerFilter.test(name);
+                    if (!skipping) {
+                        header = writeHeader(name, lineNumber);
+                    }
+                } else if (!skipping) {
+                    if (header == -1) {
+                        throw new IrisInvalidConfigException("line " + lineNumber + ": at least one header at the top is needed", lineNumber);
+                    }
+                    writeKey(header, line.split(" "), lineNumber);
+                }
+            }
+        } catch (IOException e) {
+            throw new IrisLoadConfigException("could not load config file '" + file.getName() + "'");
+        }
+    }
+
+    /**
+     * Reserves a direct buffer, or maps a temporary file if the direct memory is exhausted.
+     *
+     * Direct memory is limited by -XX:MaxDirectMemorySize which defaults to the maximum heap size,
+     * mapped files are not counted against that limit.
+     */
+    private static ByteBuffer allocate(int capacity) throws IrisLoadConfigException {
+
+        try {
+            return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+        } catch (OutOfMemoryError e) {
+            try {
+                Path temporary = Files.createTempFile("iris", ".offheap");
+                // The mapping stays valid after the channel is closed and the file is deleted
+                try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+                    return channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity).order(ByteOrder.nativeOrder());
+                }
+            } catch (IOException mapException) {
+                throw new IrisLoadConfigException("could not reserve " + capacity + " bytes of direct memory, raise -XX:MaxDirectMemorySize");
+            }
+        }
+    }
+
+    private int writeHeader(String name, int line) throws IrisLoadConfigException {
+
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        headerCount++;
+        if (data == null) {
+            size += HEADER_NAME + bytes.length + 4;
+            return 0;
+        }
+        ensure(HEADER_NAME + bytes.length + 4);
+
+        int offset = data.position();
+        data.putInt(name.hashCode()).putInt(line).putInt(bytes.length).put(bytes).putInt(0);
+
+        return offset;
+    }
+
+    private void writeKey(int header, String[] info, int line) throws IrisLoadConfigException {
+
+        byte[] name = info[0].getBytes(StandardCharsets.UTF_8);
+        byte[][] values = new byte[info.length - 1][];
+        long size = KEY_NAME + 4 + name.length + 4 + 4L * values.length;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = info[i + 1].getBytes(StandardCharsets.UTF_8);
+            size += 4 + values[i].length;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IrisLoadConfigException("key '" + info[0] + "' is too large");
+        }
+        keyCount++;
+        valueCount += values.length;
+        if (data == null) {
+            this.size += size;
+            return;
+        }
+        ensure((int) size);
+
+        int offset = data.position();
+        data.putInt(info[0].hashCode()).putInt(header).putInt(line).putInt(offset + (int) size).putInt(-1)
+                .putInt(name.length).put(name).putInt(values.length);
+
+        int table = data.position();
+        data.position(table + 4 * values.length);
+        for (int i = 0; i < values.length; i++) {
+            data.putInt(table + 4 * i, data.position());
+            data.putInt(values[i].length).put(values[i]);
+        }
+
+        int keyCountOffset = header + HEADER_NAME + data.getInt(header + 8);
+        data.putInt(keyCountOffset, data.getInt(keyCountOffset) + 1);
+    }
+
+    /**
+     * Grows the data buffer if the given number of bytes does not fit, which only happens if the file grew after it was measured.
+     *
+     * @param bytes The number of bytes to write.
+     * @throws IrisLoadConfigException If the store would be larger than 2 GB.
+     */
+    private void ensure(int bytes) throws IrisLoadConfigException {
+
+        if (data.remaining() >= bytes) {
+            return;
+        }
+
+        long capacity = Math.max((long) data.capacity() * 2, (long) data.position() + bytes);
+        if ((long) data.position() + bytes > Integer.MAX_VALUE) {
+            throw new IrisLoadConfigException("config is too large for an off-heap store");
+        }
+
+        ByteBuffer grown = allocate((int) Math.min(capacity, Integer.MAX_VALUE));
+        data.flip();
+        grown.put(data);
+        data = grown;
+    }
+
+    /**
+     * Builds the hash tables by walking all records in file order, later headers and keys replace earlier ones.
+     */
+    private void index() throws IrisLoadConfigException {
+
+        int headerCapacity = capacity(headerCount);
+        int keyCapacity = capacity(keyCount);
+        headerTable = allocate(headerCapacity * 4);
+        keyTable = allocate(keyCapacity * 4);
+        headerMask = headerCapacity - 1;
+        keyMask = keyCapacity - 1;
+
+        int position = 0;
+        while (position < data.limit()) {
+            int header = position;
+            insert(headerTable, headerMask, mix(data.getInt(header)), header, false);
+
+            position = firstKey(header);
+            for (int i = keyCount(header); i > 0; i--) {
+                insert(keyTable, keyMask, mix(data.getInt(position) * 31 + header), position, true);
+                position = data.getInt(position + KEY_END);
+            }
+        }
+    }
+
+    private void insert(ByteBuffer table, int mask, int hash, int offset, boolean key) {
+
+        int slot = hash & mask;
+        while (true) {
+            int entry = table.getInt(slot * 4);
+            if (entry == 0 || (key ? sameKey(entry - 1, offset) : sameHeader(entry - 1, offset))) {
+                table.putInt(slot * 4, offset + 1);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean sameHeader(int a, int b) {
+
+        return data.getInt(a) == data.getInt(b) && sameBytes(a + 8, b + 8);
+    }
+
+    private boolean sameKey(int a, int b) {
+
+        return data.getInt(a) == data.getInt(b) && data.getInt(a + KEY_HEADER) == data.getInt(b + KEY_HEADER) && sameBytes(a + KEY_NAME, b + KEY_NAME);
+    }
+
+    private boolean sameBytes(int a, int b) {
+
+        int length = data.getInt(a);
+        if (length != data.getInt(b)) {
+            return false;
+        }
+        for (int i = 4; i < length + 4; i++) {
+            if (data.get(a + i) != data.get(b + i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the offset of the header with the given name.
+     *
+     * @param name The name.
+     * @return The offset or -1 if there is no such header.
+     */
+    int findHeader(String name) {
+
+        int hash = name.hashCode();
+        int slot = mix(hash) & headerMask;
+        while (true) {
+            int entry = headerTable.getInt(slot * 4);
+            if (entry == 0) {
+                return -1;
+            }
+            if (data.getInt(entry - 1) == hash && matches(entry - 1 + 8, name)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & headerMask;
+        }
+    }
+
+    /**
+     * Returns the offset of the key with the given name in the given header.
+     *
+     * @param header The header offset.
+     * @param name The name.
+     * @return The offset or -1 if there is no such key.
+     */
+    int findKey(int header, String name) {
+
+        int hash = name.hashCode();
+        int slot = mix(hash * 31 + header) & keyMask;
+        while (true) {
+            int entry = keyTable.getInt(slot * 4);
+            if (entry == 0) {
+                return -1;
+            }
+            int key = entry - 1;
+            if (data.getInt(key) == hash && data.getInt(key + KEY_HEADER) == header && matches(key + KEY_NAME, name)) {
+                return key;
+            }
+            slot = (slot + 1) & keyMask;
+        }
+    }
+
+    /**
+     * Returns whether the length prefixed bytes at the given offset are the given string.
+     *
+     * @param offset The offset of the length.
+     * @param string The string.
+     * @return True if the bytes are the string.
+     */
+    private boolean matches(int offset, String string) {
+
+        int length = data.getInt(offset);
+        if (length == string.length()) {
+            boolean ascii = true;
+            for (int i = 0; i < length && ascii; i++) {
+                char c = string.charAt(i);
+                if (c >= 0x80) {
+                    ascii = false;
+                } else if (data.get(offset + 4 + i) != c) {
+                    return false;
+                }
+            }
+            if (ascii) {
+                return true;
+            }
+        }
+
+        return string.equals(string(offset));
+    }
+
+    /**
+     * Decodes the length prefixed string at the given offset.
+     *
+     * @param offset The offset of the length.
+     * @return The string.
+     */
+    String string(int offset) {
+
+        byte[] bytes = new byte[data.getInt(offset)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = data.get(offset + 4 + i);
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the header offsets which can be found by their name.
+     *
+     * @return The header offsets in hash table order.
+     */
+    int[] headers() {
+
+        int[] headers = new int[headerMask + 1];
+        int size = 0;
+        for (int slot = 0; slot <= headerMask; slot++) {
+            int entry = headerTable.getInt(slot * 4);
+            if (entry != 0) {
+                headers[size++] = entry - 1;
+            }
+        }
+
+        int[] result = new int[size];
+        System.arraycopy(headers, 0, result, 0, size);
+
+        return result;
+    }
+
+    String headerName(int header) {
+
+        return string(header + 8);
+    }
+
+    int headerLine(int header) {
+
+        return data.getInt(header + 4);
+    }
+
+    int keyCount(int header) {
+
+        return data.getInt(header + HEADER_NAME + data.getInt(header + 8));
+    }
+
+    int firstKey(int header) {
+
+        return header + HEADER_NAME + data.getInt(header + 8) + 4;
+    }
+
+    int nextKey(int key) {
+
+        return data.getInt(key + KEY_END);
+    }
+
+    String keyName(int key) {
+
+        return string(key + KEY_NAME);
+    }
+
+    int keyLine(int key) {
+
+        return data.getInt(key + KEY_LINE);
+    }
+
+    int valueCount(int key) {
+
+        return data.getInt(key + KEY_NAME + 4 + data.getInt(key + KEY_NAME));
+    }
+
+    /**
+     * Returns the offset of the value with the given index.
+     *
+     * @param key The key offset.
+     * @param index The index of the value.
+     * @return The offset of the length prefixed value.
+     */
+    int value(int key, int index) {
+
+        int count = key + KEY_NAME + 4 + data.getInt(key + KEY_NAME);
+        if (index < 0 || index >= data.getInt(count)) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + data.getInt(count));
+        }
+
+        return data.getInt(count + 4 + 4 * index);
+    }
+
+    /**
+     * Advances the round robin index of the key.
+     *
+     * @param key The key offset.
+     * @return The next index.
+     */
+    int next(int key) {
+
+        int index = data.getInt(key + KEY_NEXT) + 1;
+        if (index >= valueCount(key)) {
+            index = 0;
+        }
+        data.putInt(key + KEY_NEXT, index);
+
+        return index;
+    }
+
+    /**
+     * Returns the number of bytes used in direct memory.
+     *
+     * @return The number of bytes.
+     */
+    long size() {
+
+        return (long) data.capacity() + headerTable.capacity() + keyTable.capacity();
+    }
+
+    int getHeaderCount() {
+
+        return headerCount;
+    }
+
+    int getKeyCount() {
+
+        return keyCount;
+    }
+
+    int getValueCount() {
+
+        return valueCount;
+    }
+
+    private static int capacity(int count) {
+
+        int capacity = 16;
+        while (capacity < count * 2L) {
+            capacity <<= 1;
+        }
+
+        return capacity;
+    }
+
+    private static int mix(int hash) {
+
+        hash *= 0x9E3779B9;
+
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.schema;
+
+import de.progme.iris.IrisConfig;
+import de.progme.iris.config.Header;
+import de.progme.iris.config.Key;
+import de.progme.iris.config.Value;
+import de.progme.iris.config.ValueType;
+import de.progme.iris.exception.IrisSchemaException;
+
+import java.util.*;
+
+/**
+ * A schema which declares the arity and the types of the keys of a config.
+ *
+ * The schema converts every value once to its declared type while validating,
+ * all violations are collected in one pass.
+ */
+public class Schema {
+
+    /**
+     * The key specs by header and key name.
+     */
+    private Map<String, Map<String, KeySpec>> headers;
+
+    /**
+     * The names of the required headers.
+     */
+    private Set<String> requiredHeaders;
+
+    /**
+     * Whether headers and keys which are not declared are violations.
+     */
+    private boolean strict;
+
+    private Schema(SchemaBuilder builder) {
+
+        this.headers = builder.headers;
+        this.requiredHeaders = builder.requiredHeaders;
+        this.strict = builder.strict;
+    }
+
+    /**
+     * Creates a new schema builder.
+     *
+     * @return A new schema builder.
+     */
+    public static SchemaBuilder builder() {
+
+        return new SchemaBuilder();
+    }
+
+    /**
+     * Validates the given config and converts all declared values to their types.
+     *
+     * @param config The config to validate.
+     * @return All violations sorted by their line, missing headers and keys come last.
+     */
+    public List<Violation> validate(IrisConfig config) {
+
+        List<Violation> violations = new ArrayList<>();
+
+        for (String header : requiredHeaders) {
+            if (!config.hasHeader(header)) {
+                violations.add(new Violation(0, header, null, "missing header"));
+            }
+        }
+
+        for (Map.Entry<String, Map<String, KeySpec>> entry : headers.entrySet()) {
+            Header header = config.getHeader(entry.getKey());
+            if (header == null) {
+                continue;
+            }
+
+            for (KeySpec spec : entry.getValue().values()) {
+                Key key = header.getKey(spec.name);
+                if (key == null) {
+                    if (spec.required) {
+                        violations.add(new Violation(header.getLine(), header.getName(), spec.name, "missing key"));
+                    }
+                } else {
+                    spec.validate(header, key, violations);
+                }
+            }
+        }
+
+        if (strict) {
+            for (Header header : config.getHeaders()) {
+                Map<String, KeySpec> specs = headers.get(header.getName());
+                if (specs == null) {
+                    if (!requiredHeaders.contains(header.getName())) {
+                        violations.add(new Violation(header.getLine(), header.getName(), null, "unknown header"));
+                    }
+                    continue;
+                }
+
+                for (Key key : header.getKeys()) {
+                    if (!specs.containsKey(key.getName())) {
+                        violations.add(new Violation(key.getLine(), header.getName(), key.getName(), "unknown key"));
+                    }
+                }
+            }
+        }
+
+        violations.sort(Comparator.comparingInt(violation -> violation.getLine() > 0 ? violation.getLine() : Integer.MAX_VALUE));
+
+        return violations;
+    }
+
+    /**
+     * Validates the given config and converts all declared values to their types.
+     *
+     * @param config The config to validate.
+     * @throws IrisSchemaException If the config has at least one violation.
+     */
+    public void apply(IrisConfig config) throws IrisSchemaException {
+
+        List<Violation> violations = validate(config);
+        if (!violations.isEmpty()) {
+            throw new IrisSchemaException(violations);
+        }
+    }
+
+    /**
+     * The declaration of a single key.
+     */
+    private static class KeySpec {
+
+        private String name;
+
+        private boolean required;
+
+        /**
+         * The type of every single value or null if all values have the same type.
+         */
+        private ValueType[] types;
+
+        /**
+         * The type of all values if the key is a list.
+         */
+        private ValueType listType;
+
+        private int min;
+
+        private int max;
+
+        private KeySpec(String name, boolean required, ValueType[] types, ValueType listType, int min, int max) {
+
+            this.name = name;
+            this.required = required;
+            this.types = types;
+            this.listType = listType;
+            this.min = min;
+            this.max = max;
+        }
+
+        private void validate(Header header, Key key, List<Violation> violations) {
+
+            List<Value> values = key.getValues();
+
+            if (values.size() < min || values.size() > max) {
+                String expected = min == max ? String.valueOf(min) : max == Integer.MAX_VALUE ? "at least " + min : min + " to " + max;
+                violations.add(new Violation(key.getLine(), header.getName(), name, "expected " + expected + " value(s) but got " + values.size()));
+                return;
+            }
+
+            for (int i = 0; i < values.size(); i++) {
+                ValueType type = types != null ? types[i] : listType;
+                try {
+                    values.get(i).convert(type);
+                } catch (IllegalArgumentException e) {
+                    violations.add(new Violation(key.getLine(), header.getName(), name, "value " + (i + 1) + ": " + e.getMessage()));
+                }
+            }
+        }
+    }
+
+    /**
+     * A builder to declare the headers and keys of a schema.
+     */
+    public static class SchemaBuilder {
+
+        private Map<String, Map<String, KeySpec>> headers = new LinkedHashMap<>();
+
+        private Set<String> requiredHeaders = new LinkedHashSet<>();
+
+        private boolean strict;
+
+        private SchemaBuilder() {
+
+        }
+
+        /**
+         * Declares a required header.
+         *
+         * @param header The header name.
+         * @return This schema builder.
+         */
+        public SchemaBuilder header(String header) {
+
+            requiredHeaders.add(header);
+
+            return this;
+        }
+
+        /**
+         * Declares a required key which has exactly one value for every given type.
+         *
+         * @param header The header name.
+         * @param key The key name.
+         * @param types The types of the values in order.
+         * @return This schema builder.
+         */
+        public SchemaBuilder key(String header, String key, ValueType... types) {
+
+            requiredHeaders.add(header);
+
+            return add(header, new KeySpec(key, true, types.clone(), null, types.length, types.length));
+        }
+
+        /**
+         * Declares an optional key which has exactly one value for every given type.
+         *
+         * @param header The header name.
+         * @param key The key name.
+         * @param types The types of the values in order.
+         * @return This schema builder.
+         */
+        public SchemaBuilder optionalKey(String header, String key, ValueType... types) {
+
+            return add(header, new KeySpec(key, false, types.clone(), null, types.length, types.length));
+        }
+
+        /**
+         * Declares a required key which has between min and max values of the same type.
+         *
+         * @param header The header name.
+         * @param key The key name.
+         * @param type The type of all values.
+         * @param min The minimum number of values.
+         * @param max The maximum number of values.
+         * @return This schema builder.
+         */
+        public SchemaBuilder list(String header, String key, ValueType type, int min, int max) {
+
+            requiredHeaders.add(header);
+
+            return add(header, new KeySpec(key, true, null, type, min, max));
+        }
+
+        /**
+         * Declares an optional key which has between min and max values of the same type.
+         *
+         * @param header The header name.
+         * @param key The key name.
+         * @param type The type of all values.
+         * @param min The minimum number of values.
+         * @param max The maximum number of values.
+         * @return This schema builder.
+         */
+        public SchemaBuilder optionalList(String header, String key, ValueType type, int min, int max) {
+
+            return add(header, new KeySpec(key, false, null, type, min, max));
+        }
+
+        /**
+         * Treats headers and keys which are not declared as violations.
+         *
+         * @return This schema builder.
+         */
+        public SchemaBuilder strict() {
+
+            this.strict = true;
+
+            return this;
+        }
+
+        /**
+         * Builds the schema.
+         *
+         * @return The schema.
+         */
+        public Schema build() {
+
+            return new Schema(this);
+        }
+
+        private SchemaBuilder add(String header, KeySpec spec) {
+
+            headers.computeIfAbsent(header, h -> new LinkedHashMap<>()).put(spec.name, spec);
+
+            return this;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.schema;
+
+/**
+ * A single violation of a schema.
+ */
+public class Violation {
+
+    /**
+     * The line of the violation or 0 if it has no line.
+     */
+    private int line;
+
+    /**
+     * The header of the violation.
+     */
+    private String header;
+
+    /**
+     * The key of the violation or null if the violation is about the header.
+     */
+    private String key;
+
+    /**
+     * The message of the violation.
+     */
+    private String message;
+
+    /**
+     * Creates a new violation.
+     *
+     * @param line The line or 0 if it has no line.
+     * @param header The header.
+     * @param key The key or null.
+     * @param message The message.
+     */
+    public Violation(int line, String header, String key, String message) {
+
+        this.line = line;
+        this.header = header;
+        this.key = key;
+        this.message = message;
+    }
+
+    /**
+     * Returns the line of the violation.
+     *
+     * @return The line or 0 if the violation has no line, e.g. because a key is missing.
+     */
+    public int getLine() {
+
+        return line;
+    }
+
+    /**
+     * Returns the header of the violation.
+     *
+     * @return The header name.
+     */
+    public String getHeader() {
+
+        return header;
+    }
+
+    /**
+     * Returns the key of the violation.
+     *
+     * @return The key name or null if the violation is about the header.
+     */
+    public String getKey() {
+
+        return key;
+    }
+
+    /**
+     * Returns the message of the violation.
+     *
+     * @return The message.
+     */
+    public String getMessage() {
+
+        return message;
+    }
+
+    @Override
+    public String toString() {
+
+        String location = key != null ? header + "." + key : header;
+
+        return (line > 0 ? "line " + line + ": " : "") + location + ": " + message;
+    }
+}
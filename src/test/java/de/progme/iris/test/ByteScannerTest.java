@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import de.progme.iris.io.ByteScanner;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ByteScannerTest {
+
+    @Test
+    public void testSameAsScalar() {
+
+        Random random = new Random(7);
+        byte[] alphabet = {' ', '\n', '\r', '#', ':', '<', 'a', '0', (byte) 0x80, (byte) 0xFF, 0x0B, 0x09};
+
+        for (int round = 0; round < 200; round++) {
+            byte[] bytes = new byte[random.nextInt(100)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = random.nextInt(4) == 0 ? alphabet[random.nextInt(alphabet.length)] : (byte) ('a' + random.nextInt(26));
+            }
+
+            ByteScanner scanner = new ByteScanner(bytes);
+            for (int start = 0; start <= bytes.length; start++) {
+                for (int end = start; end <= bytes.length; end++) {
+                    assertEquals(ByteScanner.indexOfLineEnd(bytes, start, end), scanner.indexOfLineEnd(start, end));
+                    for (byte value : alphabet) {
+                        assertEquals(ByteScanner.indexOf(bytes, value, start, end), scanner.indexOf(value, start, end));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPositions() {
+
+        byte[] bytes = "0123456789abcdef\r\nxyz".getBytes();
+        ByteScanner scanner = new ByteScanner(bytes);
+
+        assertEquals(16, scanner.indexOfLineEnd(0, bytes.length));
+        assertEquals(17, scanner.indexOfLineEnd(17, bytes.length));
+        assertEquals(bytes.length, scanner.indexOfLineEnd(18, bytes.length));
+        assertEquals(10, scanner.indexOf((byte) 'a', 0, bytes.length));
+        assertEquals(9, scanner.indexOf((byte) 'a', 0, 9));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import de.progme.iris.Iris;
+import de.progme.iris.IrisConfig;
+import de.progme.iris.config.Value;
+import de.progme.iris.io.ConfigFiles;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class CompressionTest {
+
+    private static final String CONFIG = "# Generated\n"
+            + "server:\n"
+            + "    bind 0.0.0.0 80\n"
+            + "\n"
+            + "timeout:\n"
+            + "    connect 5000\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File compress(String name, String content) throws Exception {
+
+        File file = folder.newFile(name);
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return file;
+    }
+
+    private static String decompress(File file) throws Exception {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(file.toURI().toURL().openStream())) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+
+        for (File file : new File[]{compress("config.cp.gz", CONFIG), compress("config.cp", CONFIG)}) {
+            assertTrue(ConfigFiles.isCompressed(file));
+
+            IrisConfig irisConfig = Iris.from(file).build();
+            assertTrue(irisConfig.isCompressed());
+            assertEquals("0.0.0.0", irisConfig.getHeader("server").getKey("bind").getValue(0).asString());
+            assertEquals(5000, irisConfig.getHeader("timeout").getKey("connect").getValue(0).asInt());
+        }
+
+        assertFalse(ConfigFiles.isCompressed(new File(ClassLoader.getSystemResource("example.cp").toURI())));
+        assertFalse(Iris.from(new File(ClassLoader.getSystemResource("example.cp").toURI())).build().isCompressed());
+    }
+
+    @Test
+    public void testLarge() throws Exception {
+
+        StringBuilder content = new StringBuilder("routes:\n");
+        for (int i = 0; i < 20000; i++) {
+            content.append("    route-").append(i).append(" 10.0.").append(i / 256).append('.').append(i % 256).append('\n');
+        }
+        File file = compress("routes.cp.gz", content.toString());
+
+        IrisConfig irisConfig = Iris.from(file).build();
+        assertEquals(20000, irisConfig.getHeader("routes").getKeys().size());
+        assertEquals("10.0.78.31", irisConfig.getHeader("routes").getKey("route-19999").getValue(0).asString());
+
+        assertEquals(20000, Iris.from(file).offHeap().build().getHeader("routes").getKeys().size());
+    }
+
+    @Test
+    public void testSave() throws Exception {
+
+        File file = compress("config.cp.gz", CONFIG);
+
+        IrisConfig irisConfig = Iris.from(file).build();
+        irisConfig.getHeader("timeout").getKey("connect").setValue(0, new Value("3000"));
+        irisConfig.save();
+
+        assertEquals(CONFIG.replace("5000", "3000"), decompress(file));
+        assertEquals(3000, Iris.from(file).build().getHeader("timeout").getKey("connect").getValue(0).asInt());
+    }
+}
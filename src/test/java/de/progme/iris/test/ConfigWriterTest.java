@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import de.progme.iris.Iris;
+import de.progme.iris.IrisConfig;
+import de.progme.iris.config.Header;
+import de.progme.iris.config.Key;
+import de.progme.iris.config.Value;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class ConfigWriterTest {
+
+    private static final String CONFIG = "# The global settings\n"
+            + "global:\n"
+            + "    connections 200\n"
+            + "\n"
+            + "# Timeouts in milliseconds\n"
+            + "timeout:\n"
+            + "\tconnect 5000\n"
+            + "    client 50000   \n"
+            + "\n"
+            + "    # The server timeout\n"
+            + "    server 50000\n"
+            + "\n"
+            + "# End of file\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File write(String content) throws Exception {
+
+        File file = folder.newFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+        return file;
+    }
+
+    private static String save(IrisConfig irisConfig) throws Exception {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        irisConfig.save(out);
+
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testUnchanged() throws Exception {
+
+        assertEquals(CONFIG, save(Iris.from(write(CONFIG)).build()));
+
+        String crlf = CONFIG.replace("\n", "\r\n");
+        assertEquals(crlf, save(Iris.from(write(crlf)).build()));
+
+        String noTerminator = "test:\n    key value";
+        assertEquals(noTerminator, save(Iris.from(write(noTerminator)).build()));
+    }
+
+    @Test
+    public void testChangedKey() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(write(CONFIG)).build();
+        irisConfig.getHeader("timeout").getKey("connect").setValue(0, new Value("1000"));
+        irisConfig.getHeader("timeout").getKey("server").addValue(new Value("60000"));
+
+        assertEquals(CONFIG.replace("\tconnect 5000", "\tconnect 1000").replace("server 50000", "server 50000 60000"), save(irisConfig));
+    }
+
+    @Test
+    public void testNewKeyAndHeader() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(write(CONFIG))
+                .def(new Header("server"), new Key("bind"), new Value("0.0.0.0"), new Value("80"))
+                .build();
+        irisConfig.getHeader("global").addKey(new Key("debug"));
+        irisConfig.getHeader("global").getKey("debug").addValue(new Value("true"));
+
+        String expected = CONFIG.replace("connections 200\n", "connections 200\n    debug true\n") + "server:\n    bind 0.0.0.0 80\n";
+        assertEquals(expected, save(irisConfig));
+    }
+
+    @Test
+    public void testDuplicateHeader() throws Exception {
+
+        String config = "a:\n    x 1\nb:\n    y 2\na:\n    z 3\n";
+        assertEquals(config, save(Iris.from(write(config)).build()));
+
+        IrisConfig irisConfig = Iris.from(write(config)).build();
+        irisConfig.getHeader("a").getKey("z").setValue(0, new Value("4"));
+        irisConfig.getHeader("a").addKey(new Key("w"));
+
+        assertEquals("a:\n    x 1\nb:\n    y 2\na:\n    z 4\n    w\n", save(irisConfig));
+    }
+
+    @Test
+    public void testSaveFile() throws Exception {
+
+        File file = write(CONFIG);
+        IrisConfig irisConfig = Iris.from(file).interpolate().build();
+        irisConfig.getHeader("global").getKey("connections").setValue(0, new Value("${timeout.connect}"));
+        irisConfig.save();
+
+        IrisConfig saved = Iris.from(file).interpolate().build();
+        assertEquals(5000, saved.getHeader("global").getKey("connections").nextInt());
+        assertEquals(CONFIG.replace("connections 200", "connections ${timeout.connect}"), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        saved.save(Channels.newChannel(out));
+        assertEquals(CONFIG.replace("connections 200", "connections ${timeout.connect}"), new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
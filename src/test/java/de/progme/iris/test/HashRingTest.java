@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import de.progme.iris.Iris;
+import de.progme.iris.IrisConfig;
+import de.progme.iris.config.Key;
+import de.progme.iris.config.Value;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class HashRingTest {
+
+    private static final int HASHES = 30000;
+
+    private static Key key(String name, String... values) {
+
+        Key key = new Key(name);
+        for (String value : values) {
+            key.addValue(new Value(value));
+        }
+
+        return key;
+    }
+
+    private static Map<String, Integer> distribution(Key key, Key weights) {
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (long hash = 0; hash < HASHES; hash++) {
+            counts.merge(key.route(hash, weights).asString(), 1, Integer::sum);
+        }
+
+        return counts;
+    }
+
+    @Test
+    public void testRoute() {
+
+        Key backends = key("backends", "10.0.0.1", "10.0.0.2", "10.0.0.3");
+
+        assertSame(backends.route(42), backends.route(42));
+
+        Map<String, Integer> counts = distribution(backends, null);
+        assertEquals(3, counts.size());
+        for (int count : counts.values()) {
+            assertTrue(String.valueOf(counts), count > HASHES / 5 && count < HASHES / 2);
+        }
+
+        assertNull(new Key("empty").route(1));
+    }
+
+    @Test
+    public void testMinimalMoves() {
+
+        Key backends = key("backends", "10.0.0.1", "10.0.0.2", "10.0.0.3");
+        String[] before = new String[HASHES];
+        for (int hash = 0; hash < HASHES; hash++) {
+            before[hash] = backends.route(hash).asString();
+        }
+
+        // The ring is rebuilt after the values changed
+        backends.addValue(new Value("10.0.0.4"));
+
+        int moved = 0;
+        for (int hash = 0; hash < HASHES; hash++) {
+            String after = backends.route(hash).asString();
+            if (!after.equals(before[hash])) {
+                moved++;
+                assertEquals("10.0.0.4", after);
+            }
+        }
+        assertTrue(String.valueOf(moved), moved > HASHES / 8 && moved < HASHES * 3 / 8);
+    }
+
+    @Test
+    public void testWeights() {
+
+        Key backends = key("backends", "big", "small", "off");
+        Key weights = key("weights", "3", "1", "0");
+
+        Map<String, Integer> counts = distribution(backends, weights);
+        assertNull(counts.get("off"));
+        assertTrue(String.valueOf(counts), counts.get("big") > HASHES * 2 / 3);
+
+        weights.setValue(2, new Value("4"));
+        counts = distribution(backends, weights);
+        assertTrue(String.valueOf(counts), counts.get("off") > HASHES / 3);
+    }
+
+    @Test
+    public void testInterpolated() throws Exception {
+
+        System.setProperty("iris.test.user", "iris");
+        IrisConfig irisConfig = Iris.from(new File(ClassLoader.getSystemResource("example-interpolation.cp").toURI())).interpolate().build();
+
+        Key bind = irisConfig.getHeader("server").getKey("bind");
+        bind.route(0);
+
+        // The ring is rebuilt after a referenced key changed
+        irisConfig.getHeader("global").getKey("host").setValue(0, new Value("10.0.0.6"));
+
+        Key resolved = key("resolved", "10.0.0.6", "8080");
+        for (long hash = 0; hash < HASHES; hash++) {
+            assertEquals(resolved.route(hash).asString(), bind.route(hash).asString());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import de.progme.iris.Iris;
+import de.progme.iris.IrisConfig;
+import de.progme.iris.IrisHistory;
+import de.progme.iris.IrisReader;
+import de.progme.iris.config.Header;
+import de.progme.iris.config.Key;
+import de.progme.iris.config.Value;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class HeaderFilterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static File resource(String name) throws Exception {
+
+        return new File(ClassLoader.getSystemResource(name).toURI());
+    }
+
+    @Test
+    public void testOnly() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(resource("example-prefix.cp")).only("server-us", "client").build();
+
+        assertEquals(2, irisConfig.getHeaders().size());
+        assertFalse(irisConfig.hasHeader("server-eu"));
+        assertEquals("10.0.0.2", irisConfig.getHeader("server-us").getKey("bind").getValue(0).asString());
+        assertEquals(8080, irisConfig.getHeader("client").getKey("bind").getValue(1).asInt());
+
+        IrisConfig offHeap = Iris.from(resource("example-prefix.cp")).only("server-us", "client").offHeap().build();
+        assertEquals(2, offHeap.getHeaders().size());
+        assertFalse(offHeap.hasHeader("server-eu"));
+        assertEquals("10.0.0.2", offHeap.getHeader("server-us").getKey("bind").getValue(0).asString());
+    }
+
+    @Test
+    public void testPredicate() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(resource("example-prefix.cp")).only(name -> name.startsWith("server-")).build();
+
+        assertEquals(2, irisConfig.getHeaders().size());
+        assertEquals(4, irisConfig.getHeader("server-eu").keysWithPrefix("backend-").size());
+    }
+
+    @Test
+    public void testDefaults() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(resource("example-prefix.cp"))
+                .only("client")
+                .def(new Header("servers"), new Key("count"), new Value("1"))
+                .def(new Header("client"), new Key("timeout"), new Value("5000"))
+                .build();
+
+        assertEquals(1, irisConfig.getHeader("servers").getKey("count").getValue(0).asInt());
+        assertEquals(5000, irisConfig.getHeader("client").getKey("timeout").getValue(0).asInt());
+    }
+
+    @Test
+    public void testInheritance() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(resource("example-inheritance.cp")).only("server-us").build();
+
+        Header us = irisConfig.getHeader("server-us");
+        assertEquals("10.0.0.1", us.getKey("bind").getValue(0).asString());
+        assertEquals(5000, us.getKey("timeout").getValue(0).asInt());
+        assertEquals(8, us.getKey("workers").getValue(0).asInt());
+    }
+
+    @Test
+    public void testSave() throws Exception {
+
+        File file = resource("example-prefix.cp");
+        IrisConfig irisConfig = Iris.from(file).only("servers").build();
+        irisConfig.getHeader("servers").getKey("count").setValue(0, new Value("3"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        irisConfig.save(out);
+
+        // The skipped headers are kept as they are
+        String expected = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).replace("count 2", "count 3");
+        assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testSource() throws Exception {
+
+        String config = "# Company config\na:\n    x 1\nb:\n    y 2 3\n    z 4\nc:\n    w 5\n";
+        File file = folder.newFile();
+        Files.write(file.toPath(), config.getBytes(StandardCharsets.UTF_8));
+
+        // Only the loaded sections are kept, the other lines are blank
+        Iris.IrisBuilder irisBuilder = Iris.from(file).only("a", "c");
+        IrisConfig irisConfig = irisBuilder.build();
+        IrisHistory history = new IrisHistory(1, irisBuilder);
+        history.commit(irisConfig);
+        assertEquals("# Company config\na:\n    x 1\n\n\n\nc:\n    w 5\n".length(), history.getSourceSize());
+        assertEquals(5, irisConfig.getHeader("c").getKey("w").getValue(0).asInt());
+        assertEquals(7, irisConfig.getHeader("c").getLine());
+
+        // The skipped sections are read again from the file
+        irisConfig.getHeader("c").getKey("w").setValue(0, new Value("6"));
+        irisConfig.save();
+        assertEquals(config.replace("w 5", "w 6"), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+
+        // A skipped section may change, a loaded one must not
+        Files.write(file.toPath(), config.replace("y 2 3", "y 2").getBytes(StandardCharsets.UTF_8));
+        irisConfig.save();
+        assertEquals(config.replace("y 2 3", "y 2").replace("w 5", "w 6"), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+
+        Files.write(file.toPath(), config.replace("x 1", "x 2").getBytes(StandardCharsets.UTF_8));
+        try {
+            irisConfig.save();
+            fail();
+        } catch (IOException e) {
+            // The file is not truncated
+            assertEquals(config.replace("x 1", "x 2"), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testSkipHeader() throws Exception {
+
+        IrisReader reader = new IrisReader("a:\n    x 1 2\n    y 3\nb:\n    z 4\n".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(IrisReader.Event.HEADER, reader.next());
+        assertEquals(IrisReader.Event.KEY, reader.next());
+        reader.skipHeader();
+        assertEquals(IrisReader.Event.HEADER, reader.next());
+        assertTrue(reader.isText("b"));
+        assertEquals(4, reader.getLine());
+        assertEquals(IrisReader.Event.KEY, reader.next());
+        assertEquals(IrisReader.Event.VALUE, reader.next());
+        assertNull(reader.next());
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import de.progme.iris.Iris;
+import de.progme.iris.IrisConfig;
+import de.progme.iris.config.Header;
+import de.progme.iris.config.Key;
+import de.progme.iris.config.Value;
+import de.progme.iris.exception.IrisInvalidConfigException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class InheritanceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static File resource() throws Exception {
+
+        return new File(ClassLoader.getSystemResource("example-inheritance.cp").toURI());
+    }
+
+    private File write(String content) throws Exception {
+
+        File file = folder.newFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+        return file;
+    }
+
+    @Test
+    public void testInherit() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(resource()).build();
+
+        Header base = irisConfig.getHeader("server-base");
+        Header eu = irisConfig.getHeader("server-eu");
+        Header us = irisConfig.getHeader("server-us");
+
+        assertNull(base.getParent());
+        assertSame(base, eu.getParent());
+        assertSame(eu, us.getParent());
+
+        assertEquals("10.0.0.1", eu.getKey("bind").getValue(0).asString());
+        assertEquals("10.0.0.1", us.getKey("bind").getValue(0).asString());
+        assertEquals(4, eu.getKey("workers").getValue(0).asInt());
+        assertEquals(8, us.getKey("workers").getValue(0).asInt());
+        assertEquals(3, us.getKeys().size());
+
+        // Unchanged keys are shared
+        assertSame(base.getKey("timeout"), eu.getKey("timeout"));
+        assertSame(base.getKey("timeout"), us.getKey("timeout"));
+        assertSame(eu.getKey("bind"), us.getKey("bind"));
+        assertTrue(us.isInherited(us.getKey("timeout")));
+        assertFalse(us.isInherited(us.getKey("workers")));
+    }
+
+    @Test
+    public void testSave() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(resource()).build();
+        irisConfig.getHeader("server-base").getKey("timeout").setValue(0, new Value("3000"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        irisConfig.save(out);
+
+        String expected = new String(Files.readAllBytes(resource().toPath()), StandardCharsets.UTF_8).replace("5000", "3000");
+        assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testIndexes() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(resource()).reverseIndex().interpolate().build();
+
+        assertEquals(1, irisConfig.findByValue(5000).size());
+        assertEquals("server-base", irisConfig.findByValue(5000).get(0).getHeader().getName());
+
+        // The parent's key stays indexed if a child overrides it
+        Key timeout = new Key("timeout");
+        timeout.addValue(new Value("5000"));
+        irisConfig.getHeader("server-us").addKey(timeout);
+        assertEquals(2, irisConfig.findByValue(5000).size());
+        assertEquals("server-us", irisConfig.findByValue(5000).get(1).getHeader().getName());
+
+        irisConfig.getHeader("server-base").getKey("timeout").setValue(0, new Value("3000"));
+        assertEquals(1, irisConfig.findByValue(3000).size());
+        assertEquals(1, irisConfig.findByValue(5000).size());
+    }
+
+    @Test
+    public void testScan() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(resource()).build();
+
+        assertEquals(1, irisConfig.findByValue(5000).size());
+        assertEquals("server-base", irisConfig.findByValue("5000").get(0).getHeader().getName());
+        assertEquals(2, irisConfig.findByValue("80").size());
+    }
+
+    @Test
+    public void testDefaults() throws Exception {
+
+        File file = write("base:\n    port\nchild < base:\n    host a\nsibling < base:\n    host b\n");
+        IrisConfig irisConfig = Iris.from(file)
+                .def(new Header("child"), new Key("port"), new Value("9000"))
+                .build();
+
+        assertEquals(9000, irisConfig.getHeader("child").getKey("port").getValue(0).asInt());
+        assertFalse(irisConfig.getHeader("base").getKey("port").hasValues());
+        assertFalse(irisConfig.getHeader("sibling").getKey("port").hasValues());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        irisConfig.save(out);
+        assertEquals("base:\n    port\nchild < base:\n    host a\n    port 9000\nsibling < base:\n    host b\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testCycle() throws Exception {
+
+        File file = write("a < c:\n    key 1\nb < a:\n    key 2\nc < b:\n    key 3\n");
+        try {
+            Iris.from(file).build();
+            fail();
+        } catch (IrisInvalidConfigException e) {
+            assertTrue(e.getMessage().contains("inherits from itself"));
+        }
+    }
+
+    @Test
+    public void testMissingParent() throws Exception {
+
+        File file = write("a:\n    key 1\nb < missing:\n    key 2\n");
+        try {
+            Iris.from(file).build();
+            fail();
+        } catch (IrisInvalidConfigException e) {
+            assertEquals(3, e.getLine());
+        }
+    }
+}
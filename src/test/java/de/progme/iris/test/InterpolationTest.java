@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import de.progme.iris.Iris;
+import de.progme.iris.IrisConfig;
+import de.progme.iris.config.Key;
+import de.progme.iris.config.Value;
+import de.progme.iris.config.ValueType;
+import de.progme.iris.exception.IrisInvalidConfigException;
+import de.progme.iris.schema.Schema;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class InterpolationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private IrisConfig load(String name) throws Exception {
+
+        System.setProperty("iris.test.user", "iris");
+
+        return Iris.from(new File(ClassLoader.getSystemResource(name).toURI())).interpolate().build();
+    }
+
+    @Test
+    public void testResolve() throws Exception {
+
+        IrisConfig irisConfig = load("example-interpolation.cp");
+        Key bind = irisConfig.getHeader("server").getKey("bind");
+
+        assertEquals("10.0.0.5", bind.getValue(0).asString());
+        assertEquals("${global.host}", bind.getValue(0).asRawString());
+        assertEquals(8080, bind.getValue(1).asInt());
+        assertEquals("http://10.0.0.5:8080/", irisConfig.getHeader("server").getKey("url").nextString());
+        assertEquals("iris", irisConfig.getHeader("server").getKey("user").nextString());
+    }
+
+    @Test
+    public void testMemoized() throws Exception {
+
+        IrisConfig irisConfig = load("example-interpolation.cp");
+        Value url = irisConfig.getHeader("server").getKey("url").getValue(0);
+
+        assertSame(url.asString(), url.asString());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+
+        IrisConfig irisConfig = load("example-interpolation.cp");
+        Key host = irisConfig.getHeader("global").getKey("host");
+        Value bind = irisConfig.getHeader("server").getKey("bind").getValue(0);
+        Value url = irisConfig.getHeader("server").getKey("url").getValue(0);
+        Value user = irisConfig.getHeader("server").getKey("user").getValue(0);
+        String cachedUser = user.asString();
+
+        assertEquals("http://10.0.0.5:8080/", url.asString());
+
+        host.setValue(0, new Value("10.0.0.6"));
+
+        assertEquals("10.0.0.6", bind.asString());
+        assertEquals("http://10.0.0.6:8080/", url.asString());
+        assertSame(cachedUser, user.asString());
+    }
+
+    @Test
+    public void testReplacedKey() throws Exception {
+
+        IrisConfig irisConfig = load("example-interpolation.cp");
+        Key url = irisConfig.getHeader("server").getKey("url");
+        assertEquals("http://10.0.0.5:8080/", url.getValue(0).asString());
+
+        Key host = new Key("host");
+        host.addValue(new Value("10.0.0.9"));
+        irisConfig.getHeader("global").addKey(host);
+
+        assertEquals("10.0.0.9", irisConfig.getHeader("server").getKey("bind").getValue(0).asString());
+        assertEquals("http://10.0.0.9:8080/", url.getValue(0).asString());
+
+        // The new key is watched instead of the replaced one
+        host.setValue(0, new Value("10.0.0.10"));
+        assertEquals("http://10.0.0.10:8080/", url.getValue(0).asString());
+    }
+
+    @Test
+    public void testReplacedInheritedKey() throws Exception {
+
+        File file = folder.newFile();
+        Files.write(file.toPath(), "base:\n    host a\nchild < base:\n    port 1\nurls:\n    child ${child.host}\n    base ${base.host}\n"
+                .getBytes(StandardCharsets.UTF_8));
+        IrisConfig irisConfig = Iris.from(file).interpolate().build();
+
+        Key host = new Key("host");
+        host.addValue(new Value("b"));
+        irisConfig.getHeader("child").addKey(host);
+
+        assertEquals("b", irisConfig.getHeader("urls").getKey("child").getValue(0).asString());
+        assertEquals("a", irisConfig.getHeader("urls").getKey("base").getValue(0).asString());
+    }
+
+    @Test
+    public void testSchemaAfterInterpolation() throws Exception {
+
+        System.setProperty("iris.test.user", "iris");
+
+        IrisConfig irisConfig = Iris.from(new File(ClassLoader.getSystemResource("example-interpolation.cp").toURI()))
+                .interpolate()
+                .schema(Schema.builder().key("server", "bind", ValueType.STRING, ValueType.INT).build())
+                .build();
+
+        assertEquals(ValueType.INT, irisConfig.getHeader("server").getKey("bind").getValue(1).getType());
+        assertEquals(8080, irisConfig.getHeader("server").getKey("bind").getValue(1).asInt());
+    }
+
+    @Test
+    public void testCycle() throws Exception {
+
+        try {
+            load("example-interpolation-cycle.cp");
+            fail();
+        } catch (IrisInvalidConfigException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("cycle"));
+            assertTrue(e.getLine() > 0);
+        }
+    }
+
+    @Test
+    public void testWithoutInterpolation() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(new File(ClassLoader.getSystemResource("example-interpolation.cp").toURI())).build();
+
+        assertEquals("${global.host}", irisConfig.getHeader("server").getKey("bind").getValue(0).asString());
+    }
+}
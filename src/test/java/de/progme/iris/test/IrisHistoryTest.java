@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import de.progme.iris.Iris;
+import de.progme.iris.IrisConfig;
+import de.progme.iris.IrisHistory;
+import de.progme.iris.config.Header;
+import de.progme.iris.config.Key;
+import de.progme.iris.config.Value;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IrisHistoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File write(String content) throws Exception {
+
+        File file = new File(folder.getRoot(), "config.cp");
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+        return file;
+    }
+
+    @Test
+    public void testCommit() throws Exception {
+
+        Iris.IrisBuilder builder = Iris.from(write("server:\n    bind 0.0.0.0 80\ntimeout:\n    connect 5000\n"));
+        IrisHistory history = new IrisHistory(8, builder);
+        IrisConfig irisConfig = builder.build();
+
+        IrisHistory.Version first = history.commit(irisConfig);
+        assertEquals(1, first.getNumber());
+        assertSame(first, history.commit(irisConfig));
+
+        irisConfig.getHeader("server").getKey("bind").setValue(1, new Value("8080"));
+        IrisHistory.Version second = history.commit(irisConfig);
+        assertEquals(2, second.getNumber());
+        assertEquals(Arrays.asList("0.0.0.0", "80"), first.getValues("server", "bind"));
+        assertEquals(Arrays.asList("0.0.0.0", "8080"), second.getValues("server", "bind"));
+
+        // Unchanged keys are shared between the versions
+        assertSame(first.getValues("timeout", "connect"), second.getValues("timeout", "connect"));
+
+        // A reloaded config with the same values shares them too
+        Files.write(new File(folder.getRoot(), "config.cp").toPath(),
+                "server:\n    bind 0.0.0.0 8080\ntimeout:\n    connect 3000\n".getBytes(StandardCharsets.UTF_8));
+        IrisHistory.Version third = history.commit(Iris.from(new File(folder.getRoot(), "config.cp")).build());
+        assertSame(second.getValues("server", "bind"), third.getValues("server", "bind"));
+
+        List<IrisHistory.Change> changes = first.diff(third);
+        assertEquals(2, changes.size());
+        assertEquals("server.bind: [0.0.0.0, 80] -> [0.0.0.0, 8080]", changes.get(0).toString());
+        assertEquals("timeout.connect: [5000] -> [3000]", changes.get(1).toString());
+    }
+
+    @Test
+    public void testAddAndRemove() throws Exception {
+
+        Iris.IrisBuilder builder = Iris.from(write("a:\n    x 1\n    y 2\nb:\n    z 3\n"));
+        IrisHistory history = new IrisHistory(8, builder);
+        IrisHistory.Version first = history.commit(builder.build());
+        IrisHistory.Version second = history.commit(Iris.from(write("a:\n    x 1\n    w 4\n")).build());
+
+        assertFalse(second.hasHeader("b"));
+        assertEquals(Arrays.asList("w", "x"), second.getKeyNames("a"));
+
+        List<IrisHistory.Change> changes = first.diff(second);
+        assertEquals(3, changes.size());
+        assertEquals("a.w: null -> [4]", changes.get(0).toString());
+        assertEquals("a.y: [2] -> null", changes.get(1).toString());
+        assertEquals("b.z: [3] -> null", changes.get(2).toString());
+    }
+
+    @Test
+    public void testRevert() throws Exception {
+
+        Iris.IrisBuilder builder = Iris.from(write("server:\n    bind 0.0.0.0 80\n"));
+        IrisHistory history = new IrisHistory(8, builder);
+        IrisConfig irisConfig = builder.build();
+        history.commit(irisConfig);
+
+        Key bind = irisConfig.getHeader("server").getKey("bind");
+        bind.setValue(1, new Value("8080"));
+        history.commit(irisConfig);
+        assertSame(irisConfig, history.getConfig());
+
+        IrisConfig reverted = history.revert(1);
+        assertSame(reverted, history.getConfig());
+        assertEquals(80, reverted.getHeader("server").getKey("bind").getValue(1).asInt());
+        assertEquals(3, history.getCurrent().getNumber());
+        assertTrue(history.getVersion(1).diff(history.getCurrent()).isEmpty());
+
+        // The reverted config is saved to the original file
+        reverted.save();
+        assertEquals(80, Iris.from(new File(folder.getRoot(), "config.cp")).build().getHeader("server").getKey("bind").getValue(1).asInt());
+    }
+
+    @Test
+    public void testRevertKeepsLayout() throws Exception {
+
+        String content = "# important\nserver:\n  port 1\n  host a\n\n# timeouts\nb:\n\tconnect 5000\n";
+        File file = write(content);
+        Iris.IrisBuilder builder = Iris.from(file);
+        IrisHistory history = new IrisHistory(8, builder);
+
+        IrisConfig irisConfig = builder.build();
+        irisConfig.getHeader("server").getKey("host").setValue(0, new Value("c"));
+        history.commit(irisConfig);
+
+        irisConfig.getHeader("server").getKey("port").setValue(0, new Value("2"));
+        irisConfig.getHeader("b").getKey("connect").setValue(0, new Value("3000"));
+        history.commit(irisConfig);
+
+        // Only the key which was changed before the first commit is rewritten
+        history.revert(1).save();
+        assertEquals(content.replace("host a", "host c"), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testRevertWithSettings() throws Exception {
+
+        Iris.IrisBuilder builder = Iris.from(write("g:\n    host a\nbase:\n    url http://${g.host}/\n    port 80\nchild < base:\n    port 81\n"))
+                .def(new Header("extra"), new Key("debug"), new Value("true"))
+                .interpolate()
+                .reverseIndex()
+                .freeze();
+        IrisHistory history = new IrisHistory(8, builder);
+
+        IrisConfig irisConfig = builder.build();
+        history.commit(irisConfig);
+        assertEquals(Arrays.asList("base", "child", "extra", "g"), history.getCurrent().getHeaderNames());
+        assertEquals(Arrays.asList("port"), history.getCurrent().getKeyNames("child"));
+
+        irisConfig.getHeader("g").getKey("host").setValue(0, new Value("b"));
+        history.commit(irisConfig);
+
+        IrisConfig reverted = history.revert(1);
+        assertEquals("http://a/", reverted.getHeader("base").getKey("url").getValue(0).asString());
+        assertEquals("http://a/", reverted.getHeader("child").getKey("url").getValue(0).asString());
+        assertTrue(reverted.getHeader("child").isInherited(reverted.getHeader("child").getKey("url")));
+        assertTrue(reverted.getHeader("extra").getKey("debug").getValue(0).asBoolean());
+        assertEquals(1, reverted.findByValue(80).size());
+        assertTrue(reverted.isFrozen());
+    }
+
+    @Test
+    public void testReloadedSources() throws Exception {
+
+        StringBuilder content = new StringBuilder("# generated\n");
+        for (int i = 0; i < 200; i++) {
+            content.append("header").append(i).append(":\n    key value").append(i).append('\n');
+        }
+        String original = content.toString();
+
+        File file = write(original);
+        Iris.IrisBuilder builder = Iris.from(file);
+        IrisHistory history = new IrisHistory(16, builder);
+        history.commit(builder.build());
+
+        for (int i = 1; i <= 5; i++) {
+            write(original.replace("value100\n", "value100-" + i + "\n"));
+            history.commit(builder.build());
+        }
+
+        // The same content again keeps only the copy of the new config
+        history.commit(builder.build());
+        assertEquals(6, history.getVersions().size());
+
+        // The whole source is only kept once, the older versions keep their changed bytes
+        long size = history.getSourceSize();
+        assertTrue(String.valueOf(size), size >= original.length() && size < original.length() + 64);
+
+        history.revert(3).save();
+        assertEquals(original.replace("value100\n", "value100-2\n"), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+
+        history.revert(1).save();
+        assertEquals(original, new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testPin() throws Exception {
+
+        Iris.IrisBuilder builder = Iris.from(write("server:\n    port 0\n"));
+        IrisHistory history = new IrisHistory(2, builder);
+        IrisConfig irisConfig = builder.build();
+        history.commit(irisConfig);
+
+        Key port = irisConfig.getHeader("server").getKey("port");
+        try (IrisHistory.Pin pin = history.pin()) {
+            for (int i = 1; i <= 5; i++) {
+                port.setValue(0, new Value(String.valueOf(i)));
+                history.commit(irisConfig);
+            }
+
+            assertEquals(Arrays.asList("0"), pin.getVersion().getValues("server", "port"));
+            assertNotNull(history.getVersion(1));
+            assertEquals(3, history.getVersions().size());
+        }
+
+        assertNull(history.getVersion(1));
+        assertEquals(2, history.getVersions().size());
+        assertEquals(5, history.getVersions().get(0).getNumber());
+
+        try {
+            history.revert(1);
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
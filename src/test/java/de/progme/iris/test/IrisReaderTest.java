@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import de.progme.iris.IrisReader;
+import de.progme.iris.exception.IrisInvalidConfigException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IrisReaderTest {
+
+    private static final String CONFIG = "# Comment\r\n"
+            + "server:\r\n"
+            + "    bind 0.0.0.0 80\r"
+            + "\r\n"
+            + "server-eu < server :\n"
+            + "\tdebug\n"
+            + "    name a  b";
+
+    private static List<String> events(IrisReader reader) throws Exception {
+
+        List<String> events = new ArrayList<>();
+        IrisReader.Event event;
+        while ((event = reader.next()) != null) {
+            String parent = reader.getParent() != null ? "<" + reader.getParent() : "";
+            events.add(reader.getLine() + " " + event + " " + reader.getText() + parent);
+        }
+
+        return events;
+    }
+
+    /**
+     * Returns at most one byte per read, so every line crosses the buffer boundaries.
+     */
+    private static InputStream trickle(byte[] bytes) {
+
+        return new FilterInputStream(new ByteArrayInputStream(bytes)) {
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+    }
+
+    @Test
+    public void testEvents() throws Exception {
+
+        byte[] bytes = CONFIG.getBytes(StandardCharsets.UTF_8);
+        List<String> expected = new ArrayList<>();
+        expected.add("2 HEADER server");
+        expected.add("3 KEY bind");
+        expected.add("3 VALUE 0.0.0.0");
+        expected.add("3 VALUE 80");
+        expected.add("5 HEADER server-eu<server");
+        expected.add("6 KEY debug");
+        expected.add("7 KEY name");
+        expected.add("7 VALUE a");
+        expected.add("7 VALUE ");
+        expected.add("7 VALUE b");
+
+        assertEquals(expected, events(new IrisReader(bytes)));
+        assertEquals(expected, events(new IrisReader(new ByteArrayInputStream(bytes))));
+        assertEquals(expected, events(new IrisReader(trickle(bytes))));
+    }
+
+    @Test
+    public void testLongLine() throws Exception {
+
+        StringBuilder content = new StringBuilder("routes:\n    hosts");
+        for (int i = 0; i < 5000; i++) {
+            content.append(" 10.0.").append(i / 256).append('.').append(i % 256);
+        }
+        content.append("\n    end 1\n");
+
+        try (IrisReader reader = new IrisReader(new ByteArrayInputStream(content.toString().getBytes(StandardCharsets.UTF_8)))) {
+            int values = 0;
+            IrisReader.Event event;
+            while ((event = reader.next()) != null) {
+                if (event == IrisReader.Event.VALUE) {
+                    values++;
+                }
+            }
+            assertEquals(5001, values);
+            assertEquals(3, reader.getLine());
+        }
+    }
+
+    @Test
+    public void testIsText() throws Exception {
+
+        try (IrisReader reader = IrisReader.open(new File(ClassLoader.getSystemResource("example.cp").toURI()))) {
+            assertEquals(IrisReader.Event.HEADER, reader.next());
+            assertTrue(reader.isText("test"));
+            assertFalse(reader.isText("tes"));
+            assertFalse(reader.isText("tesT"));
+            assertFalse(reader.isText("tëst"));
+        }
+    }
+
+    @Test
+    public void testKeyBeforeHeader() throws Exception {
+
+        IrisReader reader = new IrisReader("\nkey value\n".getBytes(StandardCharsets.UTF_8));
+        try {
+            reader.next();
+            fail();
+        } catch (IrisInvalidConfigException e) {
+            assertEquals(2, e.getLine());
+        }
+    }
+}
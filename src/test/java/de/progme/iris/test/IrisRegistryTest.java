@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import de.progme.iris.Iris;
+import de.progme.iris.IrisConfig;
+import de.progme.iris.IrisRegistry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class IrisRegistryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File write(File file, String content) throws Exception {
+
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+        return file;
+    }
+
+    @Test
+    public void testShared() throws Exception {
+
+        IrisRegistry registry = IrisRegistry.builder().build();
+        File file = write(folder.newFile("shared.cp"), "server:\n    bind 0.0.0.0 80\n");
+
+        IrisConfig first = registry.get(file);
+        IrisConfig second = registry.get(new File(file.getParentFile(), "./shared.cp").getPath());
+
+        assertSame(first, second);
+        assertEquals(1, registry.getStats().getMissCount());
+        assertEquals(1, registry.getStats().getHitCount());
+    }
+
+    @Test
+    public void testRevalidation() throws Exception {
+
+        IrisRegistry registry = IrisRegistry.builder().build();
+        File file = write(folder.newFile("shared.cp"), "server:\n    bind 0.0.0.0 80\n");
+
+        IrisConfig first = registry.get(file);
+
+        // Only the modification time changes, the content hash is the same
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(file.lastModified() + 10000));
+        assertSame(first, registry.get(file));
+
+        write(file, "server:\n    bind 0.0.0.0 8080\n");
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(file.lastModified() + 20000));
+        IrisConfig changed = registry.get(file);
+
+        assertNotSame(first, changed);
+        assertEquals(8080, changed.getHeader("server").getKey("bind").getValue(1).asInt());
+        assertEquals(2, registry.getStats().getMissCount());
+        assertEquals(1, registry.getStats().getHitCount());
+    }
+
+    @Test
+    public void testChangedWhileLoading() throws Exception {
+
+        AtomicInteger loads = new AtomicInteger();
+        IrisRegistry registry = IrisRegistry.builder()
+                .loader(file -> {
+                    if (loads.incrementAndGet() == 1) {
+                        // The file changes between hashing and parsing
+                        try {
+                            write(file, "server:\n    bind 0.0.0.0 8080\n");
+                            Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(file.lastModified() + 10000));
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                    return Iris.from(file).build();
+                })
+                .build();
+        File file = write(folder.newFile("shared.cp"), "server:\n    bind 0.0.0.0 80\n");
+
+        IrisConfig first = registry.get(file);
+        assertEquals(0, registry.size());
+
+        IrisConfig second = registry.get(file);
+        assertNotSame(first, second);
+        assertEquals(8080, second.getHeader("server").getKey("bind").getValue(1).asInt());
+        assertSame(second, registry.get(file));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+
+        IrisRegistry registry = IrisRegistry.builder().maximumSize(2).build();
+        File a = write(folder.newFile("a.cp"), "a:\n    key value\n");
+        File b = write(folder.newFile("b.cp"), "b:\n    key value\n");
+        File c = write(folder.newFile("c.cp"), "c:\n    key value\n");
+
+        IrisConfig configA = registry.get(a);
+        registry.get(b);
+        registry.get(a);
+        registry.get(c);
+
+        assertEquals(2, registry.size());
+        assertEquals(1, registry.getStats().getEvictionCount());
+        assertSame(configA, registry.get(a));
+
+        registry.get(b);
+        assertEquals(4, registry.getStats().getMissCount());
+    }
+
+    @Test
+    public void testCollapsedLoads() throws Exception {
+
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IrisRegistry registry = IrisRegistry.builder()
+                .loader(file -> {
+                    loads.incrementAndGet();
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return Iris.from(file).build();
+                })
+                .build();
+        File file = write(folder.newFile("shared.cp"), "server:\n    bind 0.0.0.0 80\n");
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<IrisConfig>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> registry.get(file)));
+            started.await();
+            for (int i = 0; i < 7; i++) {
+                futures.add(executor.submit(() -> registry.get(file)));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            IrisConfig config = futures.get(0).get();
+            for (Future<IrisConfig> future : futures) {
+                assertSame(config, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1, registry.getStats().getMissCount());
+        assertEquals(7, registry.getStats().getHitCount());
+    }
+
+    @Test
+    public void testWeakValues() throws Exception {
+
+        IrisRegistry registry = IrisRegistry.builder().weakValues().build();
+        File file = write(folder.newFile("shared.cp"), "server:\n    bind 0.0.0.0 80\n");
+
+        IrisConfig config = registry.get(file);
+        assertSame(config, registry.get(file));
+        assertEquals(1, registry.size());
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import de.progme.iris.IrisValidator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class IrisValidatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    private void write(String name, String content) throws Exception {
+
+        File file = new File(folder.getRoot(), name);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int run(String... args) throws Exception {
+
+        return IrisValidator.run(args, new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8"));
+    }
+
+    @Test
+    public void testValid() throws Exception {
+
+        for (int i = 0; i < 50; i++) {
+            write("tenant-" + (i % 5) + "/config-" + i + ".cp", "server:\n    bind 0.0.0.0 " + (8000 + i) + "\n");
+        }
+        write("tenant-0/notes.txt", "no config");
+
+        assertEquals(0, run("--threads", "4", folder.getRoot().getPath()));
+        assertTrue(out.toString("UTF-8").startsWith("50 files"));
+        assertEquals("", err.toString("UTF-8"));
+    }
+
+    @Test
+    public void testInvalid() throws Exception {
+
+        write("a/valid.cp", "server:\n    bind 0.0.0.0 80\n");
+        write("b/wrong.cp", "# Comment\nbind 0.0.0.0 80\n");
+        write("c/cycle.cp", "a < b:\n    key 1\nb < a:\n    key 2\n");
+        write("d/reference.cp", "server:\n    bind ${missing.key}\n");
+
+        assertEquals(1, run("--interpolate", folder.getRoot().getPath()));
+
+        String errors = err.toString("UTF-8");
+        assertTrue(errors, errors.contains("wrong.cp:2: at least one header at the top is needed"));
+        assertTrue(errors, errors.contains("cycle.cp:1: header 'a' inherits from itself"));
+        assertTrue(errors, errors.contains("reference.cp:2: "));
+        assertFalse(errors, errors.contains("valid.cp"));
+        assertTrue(out.toString("UTF-8").contains("4 files"));
+        assertTrue(out.toString("UTF-8").contains("3 invalid"));
+    }
+
+    @Test
+    public void testUsage() throws Exception {
+
+        assertEquals(2, run());
+        assertEquals(2, run("--threads", "0", "config.cp"));
+        assertEquals(2, run("--unknown", "config.cp"));
+        assertTrue(err.toString("UTF-8").startsWith("usage:"));
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import de.progme.iris.Iris;
+import de.progme.iris.IrisConfig;
+import de.progme.iris.config.Key;
+import de.progme.iris.config.Value;
+import de.progme.iris.index.LongHashSet;
+import de.progme.iris.index.StringHashSet;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class MembershipTest {
+
+    @Test
+    public void testStrings() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(new File(ClassLoader.getSystemResource("example-prefix.cp").toURI())).build();
+
+        Key bind = irisConfig.getHeader("server-eu").getKey("bind");
+        assertTrue(bind.contains("10.0.0.1"));
+        assertTrue(bind.contains("80"));
+        assertTrue(bind.contains(80));
+        assertFalse(bind.contains("10.0.0.2"));
+        assertFalse(bind.contains(81));
+    }
+
+    @Test
+    public void testIntegers() {
+
+        Key ports = new Key("ports");
+        for (int port = 8000; port < 8100; port += 3) {
+            ports.addValue(new Value(String.valueOf(port)));
+        }
+
+        assertTrue(ports.contains(8000));
+        assertTrue(ports.contains(8099));
+        assertTrue(ports.contains("8003"));
+        assertFalse(ports.contains(8001));
+        assertFalse(ports.contains(7999));
+        assertFalse(ports.contains(Long.MIN_VALUE));
+        assertFalse(ports.contains("08003"));
+        assertFalse(ports.contains("abc"));
+
+        Key sparse = new Key("sparse");
+        sparse.addValue(new Value("-5"));
+        sparse.addValue(new Value("0"));
+        sparse.addValue(new Value("1000000000000"));
+
+        assertTrue(sparse.contains(-5));
+        assertTrue(sparse.contains(0));
+        assertTrue(sparse.contains(1000000000000L));
+        assertFalse(sparse.contains(5));
+
+        Key negative = new Key("negative");
+        negative.addValue(new Value("-5"));
+        negative.addValue(new Value("-4"));
+        negative.addValue(new Value("-3"));
+        assertTrue(negative.contains(-4));
+        assertFalse(negative.contains(Long.MAX_VALUE - 4));
+        assertFalse(negative.contains(Long.MAX_VALUE));
+
+        Key far = new Key("far");
+        far.addValue(new Value("-1000"));
+        far.addValue(new Value("-999"));
+        far.addValue(new Value("-998"));
+        assertFalse(far.contains(Long.MAX_VALUE));
+        assertFalse(far.contains(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void testLongIntegers() {
+
+        Key ids = new Key("ids");
+        ids.addValue(new Value("1234567890123456789"));
+        ids.addValue(new Value("-9223372036854775808"));
+        ids.addValue(new Value("9223372036854775807"));
+        assertTrue(ids.contains(1234567890123456789L));
+        assertTrue(ids.contains("1234567890123456789"));
+        assertTrue(ids.contains(Long.MIN_VALUE));
+        assertTrue(ids.contains(Long.MAX_VALUE));
+        assertFalse(ids.contains(1234567890123456788L));
+
+        Key overflow = new Key("overflow");
+        overflow.addValue(new Value("9223372036854775808"));
+        assertFalse(overflow.contains(Long.MIN_VALUE));
+        assertTrue(overflow.contains("9223372036854775808"));
+
+        // Values which Long.parseLong accepts are found by their number, strings only exactly
+        Key written = new Key("written");
+        written.addValue(new Value("080"));
+        written.addValue(new Value("+1"));
+        assertTrue(written.contains(80));
+        assertTrue(written.contains(1));
+        assertTrue(written.contains("080"));
+        assertFalse(written.contains("80"));
+    }
+
+    @Test
+    public void testSlices() {
+
+        byte[] buffer = "1234567890123456789 -9223372036854775808 9223372036854775808 080 -0".getBytes(StandardCharsets.US_ASCII);
+        Key key = new Key("slices");
+        for (int start = 0, end; start < buffer.length; start = end + 1) {
+            end = start;
+            while (end < buffer.length && buffer[end] != ' ') {
+                end++;
+            }
+            key.addValue(new Value(buffer, start, end - start));
+        }
+
+        assertTrue(key.contains(1234567890123456789L));
+        assertTrue(key.contains(Long.MIN_VALUE));
+        assertTrue(key.contains(80));
+        assertTrue(key.contains(0));
+        assertFalse(key.contains(Long.MAX_VALUE));
+        assertTrue(key.contains("9223372036854775808"));
+        assertFalse(key.contains("0"));
+    }
+
+    @Test
+    public void testChanged() {
+
+        Key key = new Key("key");
+        key.addValue(new Value("a"));
+        assertTrue(key.contains("a"));
+        assertFalse(key.contains("b"));
+
+        key.addValue(new Value("b"));
+        assertTrue(key.contains("b"));
+
+        key.setValue(0, new Value("1"));
+        assertFalse(key.contains("a"));
+        assertTrue(key.contains(1));
+
+        key.removeValue(1);
+        assertFalse(key.contains("b"));
+    }
+
+    @Test
+    public void testInterpolated() throws Exception {
+
+        System.setProperty("iris.test.user", "iris");
+        IrisConfig irisConfig = Iris.from(new File(ClassLoader.getSystemResource("example-interpolation.cp").toURI())).interpolate().build();
+
+        Key bind = irisConfig.getHeader("server").getKey("bind");
+        Key url = irisConfig.getHeader("server").getKey("url");
+        assertTrue(bind.contains(8080));
+        assertTrue(url.contains("http://10.0.0.5:8080/"));
+
+        irisConfig.getHeader("global").getKey("host").setValue(0, new Value("10.0.0.6"));
+        irisConfig.getHeader("global").getKey("port").setValue(0, new Value("9090"));
+
+        assertFalse(bind.contains(8080));
+        assertTrue(bind.contains(9090));
+        assertTrue(bind.contains("10.0.0.6"));
+        assertFalse(url.contains("http://10.0.0.5:8080/"));
+        assertTrue(url.contains("http://10.0.0.6:9090/"));
+    }
+
+    @Test
+    public void testSets() {
+
+        long[] longs = new long[1000];
+        String[] strings = new String[1000];
+        for (int i = 0; i < longs.length; i++) {
+            longs[i] = i * 7919L - 3000;
+            strings[i] = "value-" + i;
+        }
+
+        LongHashSet longSet = new LongHashSet(longs, longs.length);
+        StringHashSet stringSet = new StringHashSet(strings, strings.length);
+        assertEquals(1000, longSet.size());
+        assertEquals(1000, stringSet.size());
+
+        for (int i = 0; i < longs.length; i++) {
+            assertTrue(longSet.contains(longs[i]));
+            assertFalse(longSet.contains(longs[i] + 1));
+            assertTrue(stringSet.contains("value-" + i));
+        }
+        assertFalse(stringSet.contains("value-1000"));
+    }
+}
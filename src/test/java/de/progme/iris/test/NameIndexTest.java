@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import de.progme.iris.Iris;
+import de.progme.iris.IrisConfig;
+import de.progme.iris.config.Header;
+import de.progme.iris.config.Key;
+import de.progme.iris.index.NameIndex;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class NameIndexTest {
+
+    private static List<String> names(List<Key> keys) {
+
+        return keys.stream().map(Key::getName).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testIndex() {
+
+        Map<String, Integer> map = new HashMap<>();
+        map.put("alpha", 1);
+        map.put("alphabet", 2);
+        map.put("beta", 3);
+        map.put("gamma", 4);
+
+        NameIndex<Integer> index = NameIndex.of(map);
+
+        assertEquals(4, index.size());
+        assertEquals(2, index.withPrefix("alp").size());
+        assertEquals(4, index.withPrefix("").size());
+        assertTrue(index.withPrefix("delta").isEmpty());
+        assertEquals(1, (int) index.matching("alpha").get(0));
+        assertEquals(3, index.matching("*a").size());
+        assertEquals(3, (int) index.matching("b?t*").get(0));
+        assertEquals(2, index.matching("al*a*").size());
+        assertTrue(index.matching("alpha?").isEmpty());
+        assertTrue(NameIndex.isGlob("server-*"));
+        assertFalse(NameIndex.isGlob("server"));
+    }
+
+    @Test
+    public void testKeysWithPrefix() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(new File(ClassLoader.getSystemResource("example-prefix.cp").toURI())).build();
+        Header header = irisConfig.getHeader("server-eu");
+
+        assertEquals(names(header.keysWithPrefix("backend-eu")).toString(), 3, header.keysWithPrefix("backend-eu").size());
+        assertEquals("backend-eu-1", header.keysWithPrefix("backend-eu").get(0).getName());
+        assertEquals(2, header.findKeys("backend-*-1").size());
+        assertEquals(4, header.findKeys("backend-*").size());
+
+        header.addKey(new Key("backend-eu-3"));
+
+        assertEquals(4, header.keysWithPrefix("backend-eu").size());
+    }
+
+    @Test
+    public void testFind() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(new File(ClassLoader.getSystemResource("example-prefix.cp").toURI())).freeze().build();
+
+        assertEquals(3, irisConfig.headersWithPrefix("server").size());
+        assertEquals(2, irisConfig.findHeaders("server-*").size());
+
+        List<Key> binds = irisConfig.find("server-*", "bind");
+        assertEquals(2, binds.size());
+        assertEquals("10.0.0.1", binds.get(0).getValue(0).asString());
+        assertEquals("10.0.0.2", binds.get(1).getValue(0).asString());
+
+        assertEquals(3, irisConfig.find("*", "bind").size());
+        assertEquals(6, irisConfig.find("server*", "b*").size());
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import de.progme.iris.Iris;
+import de.progme.iris.IrisConfig;
+import de.progme.iris.config.Header;
+import de.progme.iris.config.Key;
+import de.progme.iris.config.Value;
+import de.progme.iris.config.ValueType;
+import de.progme.iris.exception.IrisException;
+import de.progme.iris.exception.IrisSchemaException;
+import de.progme.iris.offheap.OffHeapIrisConfig;
+import de.progme.iris.schema.Schema;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.PrintWriter;
+
+import static org.junit.Assert.*;
+
+public class OffHeapTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testOffHeapConfig() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(new File(ClassLoader.getSystemResource("example.cp").toURI())).offHeap().build();
+
+        assertTrue(irisConfig instanceof OffHeapIrisConfig);
+        assertTrue(irisConfig.hasHeader("test"));
+        assertTrue(irisConfig.hasHeaderAndKey("server", "bind"));
+        assertFalse(irisConfig.hasHeader("random"));
+        assertNull(irisConfig.getHeader("random"));
+        assertNull(irisConfig.getHeader("test").getKey("random"));
+        assertEquals(2, irisConfig.getHeaders().size());
+        assertEquals(3, irisConfig.getHeader("test").getKeys().size());
+
+        Key bindKey = irisConfig.getHeader("server").getKey("bind");
+        assertEquals(2, bindKey.getValues().size());
+        assertEquals("0.0.0.0", bindKey.getValue(0).asString());
+        assertEquals(80, bindKey.getValue(1).asInt());
+        assertEquals(7, bindKey.getLine());
+
+        // The round robin index lives in the store, not in the materialized key
+        assertEquals("value1", irisConfig.getHeader("test").getKey("key").nextString());
+        assertEquals("value2", irisConfig.getHeader("test").getKey("key").nextString());
+        assertEquals("value1", irisConfig.getHeader("test").getKey("key").nextString());
+    }
+
+    @Test
+    public void testHeaderNames() throws Exception {
+
+        File file = folder.newFile();
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            writer.print("a :\n    key 1\nb\t:\n    key 2\n");
+        }
+
+        IrisConfig onHeap = Iris.from(file).build();
+        IrisConfig offHeap = Iris.from(file).offHeap().build();
+
+        for (IrisConfig irisConfig : new IrisConfig[]{onHeap, offHeap}) {
+            assertTrue(irisConfig.hasHeader("a"));
+            assertTrue(irisConfig.hasHeader("b"));
+            assertEquals(2, irisConfig.getHeader("b").getKey("key").getValue(0).asInt());
+        }
+    }
+
+    @Test
+    public void testDefaults() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(new File(ClassLoader.getSystemResource("example-builder.cp").toURI()))
+                .def(new Header("server"), new Key("bind"), new Value("0.0.0.0"), new Value("80"))
+                .def(new Header("test"), new Key("key"), new Value("value1"))
+                .offHeap()
+                .build();
+
+        assertEquals(80, irisConfig.getHeader("server").getKey("bind").getValue(1).asInt());
+        assertEquals("value1", irisConfig.getHeader("test").getKey("key").nextString());
+        assertEquals(3, irisConfig.getHeaders().size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(new File(ClassLoader.getSystemResource("example.cp").toURI())).offHeap().build();
+
+        irisConfig.getHeader("test").getKey("key").addValue(new Value("value3"));
+    }
+
+    @Test
+    public void testUnsupported() throws Exception {
+
+        File file = new File(ClassLoader.getSystemResource("example.cp").toURI());
+
+        try {
+            Iris.from(file).offHeap().freeze().build();
+            fail("freeze is not supported");
+        } catch (IrisException e) {
+            assertEquals("freezing is not supported by off-heap configs", e.getMessage());
+        }
+
+        try {
+            Iris.from(file).offHeap().reverseIndex().build();
+            fail("reverse index is not supported");
+        } catch (IrisException e) {
+            assertEquals("reverse indexes are not supported by off-heap configs", e.getMessage());
+        }
+    }
+
+    @Test(expected = IrisSchemaException.class)
+    public void testSchema() throws Exception {
+
+        Iris.from(new File(ClassLoader.getSystemResource("example.cp").toURI()))
+                .schema(Schema.builder().key("test", "key", ValueType.INT, ValueType.INT).build())
+                .offHeap()
+                .build();
+    }
+
+    @Test
+    public void testLargeConfig() throws Exception {
+
+        File file = folder.newFile("large.cp");
+        try (PrintWriter writer = new PrintWriter(file)) {
+            for (int header = 0; header < 10; header++) {
+                writer.println("routes-" + header + ":");
+                for (int key = 0; key < 5000; key++) {
+                    writer.println("    backend-" + key + " 10.0." + header + "." + (key % 256) + " " + key);
+                }
+            }
+            // A later header with the same name replaces the earlier one
+            writer.println("routes-9:");
+            writer.println("    backend-0 replaced");
+        }
+
+        OffHeapIrisConfig irisConfig = (OffHeapIrisConfig) Iris.from(file).offHeap().build();
+
+        assertEquals(50001, irisConfig.getKeyCount());
+        for (int header = 0; header < 9; header++) {
+            for (int key = 0; key < 5000; key += 7) {
+                Key found = irisConfig.getHeader("routes-" + header).getKey("backend-" + key);
+                assertEquals("10.0." + header + "." + (key % 256), found.getValue(0).asString());
+                assertEquals(key, found.getValue(1).asInt());
+            }
+        }
+        assertEquals(1, irisConfig.getHeader("routes-9").getKeys().size());
+        assertEquals("replaced", irisConfig.getHeader("routes-9").getKey("backend-0").nextString());
+        assertTrue(irisConfig.getOffHeapSize() > 0);
+    }
+}
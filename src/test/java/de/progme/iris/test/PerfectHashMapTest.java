@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import de.progme.iris.Iris;
+import de.progme.iris.IrisConfig;
+import de.progme.iris.config.Key;
+import de.progme.iris.index.PerfectHashMap;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PerfectHashMapTest {
+
+    @Test
+    public void testLookup() {
+
+        Map<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            map.put("backend-" + i, i);
+        }
+
+        PerfectHashMap<Integer> perfect = PerfectHashMap.of(map);
+
+        assertEquals(map.size(), perfect.size());
+        assertEquals(map, perfect);
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(Integer.valueOf(i), perfect.get("backend-" + i));
+        }
+        assertNull(perfect.get("backend-10000"));
+        assertNull(perfect.get(42));
+        assertFalse(perfect.containsKey("frontend-1"));
+    }
+
+    @Test
+    public void testSameHashCode() {
+
+        Map<String, Integer> map = new HashMap<>();
+        map.put("Aa", 1);
+        map.put("BB", 2);
+        map.put("AaAa", 3);
+        map.put("BBBB", 4);
+
+        PerfectHashMap<Integer> perfect = PerfectHashMap.of(map);
+
+        assertEquals(Integer.valueOf(1), perfect.get("Aa"));
+        assertEquals(Integer.valueOf(2), perfect.get("BB"));
+        assertEquals(Integer.valueOf(3), perfect.get("AaAa"));
+        assertEquals(Integer.valueOf(4), perfect.get("BBBB"));
+        assertNull(perfect.get("AaBB"));
+    }
+
+    @Test
+    public void testEmpty() {
+
+        PerfectHashMap<Integer> perfect = PerfectHashMap.of(new HashMap<>());
+
+        assertTrue(perfect.isEmpty());
+        assertNull(perfect.get("key"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testFrozenConfig() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(new File(ClassLoader.getSystemResource("example.cp").toURI())).freeze().build();
+
+        assertTrue(irisConfig.isFrozen());
+        assertTrue(irisConfig.getHeader("test").isFrozen());
+        assertEquals(80, irisConfig.getHeader("server").getKey("bind").getValue(1).asInt());
+        assertEquals(3, irisConfig.getHeader("test").getKeys().size());
+        assertNull(irisConfig.getHeader("random"));
+        assertFalse(irisConfig.hasHeaderAndKey("test", "random"));
+
+        irisConfig.getHeader("test").addKey(new Key("random"));
+    }
+}
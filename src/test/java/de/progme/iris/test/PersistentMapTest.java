@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import de.progme.iris.index.PersistentMap;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PersistentMapTest {
+
+    @Test
+    public void testOperations() {
+
+        Random random = new Random(42);
+        Map<String, Integer> expected = new HashMap<>();
+        PersistentMap<String, Integer> map = PersistentMap.empty();
+
+        for (int i = 0; i < 20000; i++) {
+            String key = "key-" + random.nextInt(2000);
+            if (random.nextInt(4) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                expected.put(key, i);
+                map = map.put(key, i);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(expected.get("key-" + i), map.get("key-" + i));
+        }
+
+        Map<String, Integer> entries = new HashMap<>();
+        map.forEach(entries::put);
+        assertEquals(expected, entries);
+    }
+
+    @Test
+    public void testCollisions() {
+
+        // "Aa" and "BB" have the same hash code
+        PersistentMap<String, String> map = PersistentMap.<String, String>empty().put("Aa", "1").put("BB", "2").put("C", "3");
+        assertEquals(3, map.size());
+        assertEquals("1", map.get("Aa"));
+        assertEquals("2", map.get("BB"));
+
+        map = map.remove("Aa");
+        assertEquals(2, map.size());
+        assertNull(map.get("Aa"));
+        assertEquals("2", map.get("BB"));
+    }
+
+    @Test
+    public void testSharing() {
+
+        PersistentMap<String, String> map = PersistentMap.empty();
+        for (int i = 0; i < 1000; i++) {
+            map = map.put("key-" + i, "value-" + i);
+        }
+
+        String value = map.get("key-1");
+        assertSame(map, map.put("key-1", value));
+        assertSame(map, map.remove("missing"));
+
+        PersistentMap<String, String> changed = map.put("key-1", "changed").remove("key-2").put("key-1000", "new");
+        assertEquals("value-1", map.get("key-1"));
+        assertEquals(1000, map.size());
+        assertEquals(1000, changed.size());
+
+        Map<String, String> diff = new HashMap<>();
+        map.diff(changed, (key, from, to) -> diff.put(key, from + " -> " + to));
+        assertEquals(3, diff.size());
+        assertEquals("value-1 -> changed", diff.get("key-1"));
+        assertEquals("value-2 -> null", diff.get("key-2"));
+        assertEquals("null -> new", diff.get("key-1000"));
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import com.sun.net.httpserver.HttpServer;
+import de.progme.iris.Iris;
+import de.progme.iris.IrisConfig;
+import de.progme.iris.RemoteConfig;
+import de.progme.iris.exception.IrisLoadConfigException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class RemoteConfigTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+
+    private URI uri;
+
+    private volatile String content = "server:\n    bind 0.0.0.0 80\n";
+
+    private volatile String etag = "\"1\"";
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/config.cp", exchange -> {
+            requests.incrementAndGet();
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+
+            byte[] body = content.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        uri = new URI("http://127.0.0.1:" + server.getAddress().getPort() + "/config.cp");
+    }
+
+    @After
+    public void tearDown() {
+
+        server.stop(0);
+    }
+
+    private RemoteConfig remote() throws Exception {
+
+        return Iris.from(uri).cache(folder.getRoot()).remote();
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(uri).cache(folder.getRoot()).build();
+        assertEquals("0.0.0.0", irisConfig.getHeader("server").getKey("bind").getValue(0).asString());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testRevalidate() throws Exception {
+
+        RemoteConfig remoteConfig = remote();
+        IrisConfig first = remoteConfig.get();
+
+        assertFalse(remoteConfig.refresh());
+        assertSame(first, remoteConfig.get());
+        assertEquals(1, notModified.get());
+
+        // A new process revalidates its cached copy
+        RemoteConfig other = remote();
+        assertEquals(2, notModified.get());
+        assertEquals(80, other.get().getHeader("server").getKey("bind").getValue(1).asInt());
+
+        // Same content with a new ETag is not parsed again
+        etag = "\"2\"";
+        assertFalse(remoteConfig.refresh());
+        assertSame(first, remoteConfig.get());
+
+        content = "server:\n    bind 0.0.0.0 8080\n";
+        etag = "\"3\"";
+        assertTrue(remoteConfig.refresh());
+        assertEquals(8080, remoteConfig.get().getHeader("server").getKey("bind").getValue(1).asInt());
+    }
+
+    @Test
+    public void testOriginDown() throws Exception {
+
+        RemoteConfig remoteConfig = remote();
+        IrisConfig first = remoteConfig.get();
+        server.stop(0);
+
+        assertFalse(remoteConfig.refresh());
+        assertSame(first, remoteConfig.get());
+
+        // The last good copy is served from the cache
+        IrisConfig cached = Iris.from(uri).cache(folder.getRoot()).build();
+        assertEquals("0.0.0.0", cached.getHeader("server").getKey("bind").getValue(0).asString());
+    }
+
+    @Test(expected = IrisLoadConfigException.class)
+    public void testOriginDownWithoutCache() throws Exception {
+
+        server.stop(0);
+        remote();
+    }
+
+    @Test
+    public void testPoll() throws Exception {
+
+        RemoteConfig remoteConfig = remote();
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<IrisConfig> changed = new AtomicReference<>();
+        remoteConfig.addListener((previous, config) -> {
+            changed.set(config);
+            latch.countDown();
+        });
+
+        try {
+            remoteConfig.poll(20, TimeUnit.MILLISECONDS);
+            content = "server:\n    bind 0.0.0.0 9090\n";
+            etag = "\"2\"";
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertSame(changed.get(), remoteConfig.get());
+            assertEquals(9090, remoteConfig.get().getHeader("server").getKey("bind").getValue(1).asInt());
+            assertEquals(new File(folder.getRoot(), remoteConfig.getCacheFile().getName()), remoteConfig.getCacheFile());
+        } finally {
+            remoteConfig.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import de.progme.iris.Iris;
+import de.progme.iris.IrisConfig;
+import de.progme.iris.config.Key;
+import de.progme.iris.config.Value;
+import de.progme.iris.index.ValueLocation;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReverseIndexTest {
+
+    private IrisConfig load(boolean reverseIndex) throws Exception {
+
+        Iris.IrisBuilder builder = Iris.from(new File(ClassLoader.getSystemResource("example-prefix.cp").toURI()));
+
+        return reverseIndex ? builder.reverseIndex().build() : builder.build();
+    }
+
+    @Test
+    public void testFind() throws Exception {
+
+        for (boolean reverseIndex : new boolean[]{true, false}) {
+            IrisConfig irisConfig = load(reverseIndex);
+
+            List<ValueLocation> locations = irisConfig.findByValue("10.0.1.2");
+            assertEquals(1, locations.size());
+            assertEquals("server-eu", locations.get(0).getHeader().getName());
+            assertEquals("backend-eu-2", locations.get(0).getKey().getName());
+            assertEquals(0, locations.get(0).getPosition());
+
+            assertEquals(2, irisConfig.findByValue(80).size());
+            assertEquals(1, irisConfig.findByValue(8080).size());
+            assertEquals("client", irisConfig.findByValue(8080).get(0).getHeader().getName());
+            assertTrue(irisConfig.findByValue("10.9.9.9").isEmpty());
+        }
+    }
+
+    @Test
+    public void testMutation() throws Exception {
+
+        IrisConfig irisConfig = load(true);
+        Key bind = irisConfig.getHeader("client").getKey("bind");
+
+        bind.setValue(1, new Value("0080"));
+
+        assertTrue(irisConfig.findByValue(8080).isEmpty());
+        assertEquals(3, irisConfig.findByValue(80).size());
+        assertEquals(1, irisConfig.findByValue("0080").size());
+
+        Key backend = new Key("backend-eu-3");
+        backend.addValue(new Value("10.0.1.3"));
+        irisConfig.getHeader("server-eu").addKey(backend);
+        assertEquals("backend-eu-3", irisConfig.findByValue("10.0.1.3").get(0).getKey().getName());
+
+        backend.addValue(new Value("10.0.1.2"));
+        assertEquals(2, irisConfig.findByValue("10.0.1.2").size());
+        assertEquals(1, irisConfig.findByValue("10.0.1.2").get(1).getPosition());
+
+        Key replacement = new Key("backend-eu-3");
+        irisConfig.getHeader("server-eu").addKey(replacement);
+        assertTrue(irisConfig.findByValue("10.0.1.3").isEmpty());
+        assertEquals(1, irisConfig.findByValue("10.0.1.2").size());
+    }
+}
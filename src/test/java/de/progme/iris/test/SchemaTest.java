@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import de.progme.iris.Iris;
+import de.progme.iris.IrisConfig;
+import de.progme.iris.config.Key;
+import de.progme.iris.config.Value;
+import de.progme.iris.config.ValueType;
+import de.progme.iris.exception.IrisSchemaException;
+import de.progme.iris.schema.Schema;
+import de.progme.iris.schema.Violation;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SchemaTest {
+
+    private enum Mode {
+        FAST, SAFE
+    }
+
+    private static final Schema SCHEMA = Schema.builder()
+            .key("server", "bind", ValueType.STRING, ValueType.INT)
+            .key("server", "mode", ValueType.enumeration(Mode.class))
+            .key("timeout", "connect", ValueType.DURATION)
+            .key("timeout", "buffer", ValueType.BYTE_SIZE)
+            .optionalKey("timeout", "ratio", ValueType.DOUBLE)
+            .optionalKey("timeout", "debug", ValueType.BOOLEAN)
+            .optionalList("timeout", "hosts", ValueType.STRING, 1, 8)
+            .build();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testConversion() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(new File(ClassLoader.getSystemResource("example-schema.cp").toURI()))
+                .schema(SCHEMA)
+                .build();
+
+        Key bind = irisConfig.getHeader("server").getKey("bind");
+        assertEquals(ValueType.INT, bind.getValue(1).getType());
+        assertEquals(80, bind.getValue(1).asInt());
+        assertEquals(80L, bind.getValue(1).asLong());
+        assertEquals(Mode.FAST, irisConfig.getHeader("server").getKey("mode").getValue(0).asEnum(Mode.class));
+        assertEquals(5000, irisConfig.getHeader("timeout").getKey("connect").getValue(0).asDuration(TimeUnit.MILLISECONDS));
+        assertEquals(65536, irisConfig.getHeader("timeout").getKey("buffer").getValue(0).asBytes());
+        assertEquals(0.75, irisConfig.getHeader("timeout").getKey("ratio").getValue(0).asDouble(), 0);
+        assertTrue(irisConfig.getHeader("timeout").getKey("debug").nextBoolean());
+    }
+
+    @Test
+    public void testViolations() throws Exception {
+
+        try {
+            Iris.from(new File(ClassLoader.getSystemResource("example-schema-wrong.cp").toURI()))
+                    .schema(Schema.builder()
+                            .key("server", "bind", ValueType.STRING, ValueType.INT)
+                            .key("server", "mode", ValueType.enumeration(Mode.class))
+                            .key("timeout", "connect", ValueType.DURATION)
+                            .key("timeout", "buffer", ValueType.BYTE_SIZE)
+                            .key("global", "connections", ValueType.INT)
+                            .build())
+                    .build();
+            fail();
+        } catch (IrisSchemaException e) {
+            List<Violation> violations = e.getViolations();
+
+            assertEquals(5, violations.size());
+            assertEquals(2, violations.get(0).getLine());
+            assertEquals("bind", violations.get(0).getKey());
+            assertEquals(3, violations.get(1).getLine());
+            assertEquals(6, violations.get(2).getLine());
+            assertEquals(7, violations.get(3).getLine());
+            assertEquals("global", violations.get(4).getHeader());
+            assertEquals(0, violations.get(4).getLine());
+            assertEquals(2, e.getLine());
+        }
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+
+        File file = folder.newFile();
+        Files.write(file.toPath(), "limits:\n    buffer 99999999tb\n    timeout 9999999999999999d\n".getBytes(StandardCharsets.UTF_8));
+        IrisConfig irisConfig = Iris.from(file).build();
+
+        List<Violation> violations = Schema.builder()
+                .key("limits", "buffer", ValueType.BYTE_SIZE)
+                .key("limits", "timeout", ValueType.DURATION)
+                .build()
+                .validate(irisConfig);
+
+        assertEquals(2, violations.size());
+        assertEquals("buffer", violations.get(0).getKey());
+        assertEquals("timeout", violations.get(1).getKey());
+
+        try {
+            new Value("106751d").asDuration(TimeUnit.DAYS);
+            new Value("106752d").asDuration(TimeUnit.DAYS);
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testStrict() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(new File(ClassLoader.getSystemResource("example-schema.cp").toURI())).build();
+
+        List<Violation> violations = Schema.builder()
+                .key("server", "bind", ValueType.STRING, ValueType.INT)
+                .strict()
+                .build()
+                .validate(irisConfig);
+
+        assertEquals(2, violations.size());
+        assertEquals("mode", violations.get(0).getKey());
+        assertEquals("timeout", violations.get(1).getHeader());
+    }
+
+    @Test
+    public void testUnconvertedValue() throws Exception {
+
+        IrisConfig irisConfig = Iris.from(new File(ClassLoader.getSystemResource("example-schema.cp").toURI())).build();
+
+        assertNull(irisConfig.getHeader("timeout").getKey("connect").getValue(0).getType());
+        assertEquals(5, irisConfig.getHeader("timeout").getKey("connect").getValue(0).asDuration(TimeUnit.SECONDS));
+        assertEquals(Mode.FAST, irisConfig.getHeader("server").getKey("mode").getValue(0).asEnum(Mode.class));
+    }
+}
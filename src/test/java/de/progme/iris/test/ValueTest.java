@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016 "Marvin Erkes"
+ *
+ * This file is part of Iris.
+ *
+ * Iris is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.progme.iris.test;
+
+import de.progme.iris.config.Value;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ValueTest {
+
+    private static Value slice(String string) {
+
+        byte[] buffer = ("  " + string + "  ").getBytes(StandardCharsets.UTF_8);
+
+        return new Value(buffer, 2, buffer.length - 4);
+    }
+
+    @Test
+    public void testSliceString() {
+
+        assertEquals("value", slice("value").asString());
+        assertEquals("wert äöü", slice("wert äöü").asString());
+        assertEquals("", slice("").asString());
+    }
+
+    @Test
+    public void testSliceIntegral() {
+
+        for (String number : new String[]{"0", "80", "-80", "+80", "2147483647", "-2147483648", "007"}) {
+            assertEquals(number, Integer.parseInt(number), slice(number).asInt());
+            assertEquals(number, Long.parseLong(number), slice(number).asLong());
+        }
+        assertEquals(Long.MAX_VALUE, slice("9223372036854775807").asLong());
+        assertEquals(Long.MIN_VALUE, slice("-9223372036854775808").asLong());
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testSliceIntOverflow() {
+
+        slice("2147483648").asInt();
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testSliceNoNumber() {
+
+        slice("80a").asInt();
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testSliceSign() {
+
+        slice("-").asLong();
+    }
+
+    @Test
+    public void testSliceDecimal() {
+
+        for (String number : new String[]{"0", "0.75", "-0.1", ".5", "5.", "123456789.012345", "1e3", "1.7976931348623157E308", "0.1234567890123456789", "NaN"}) {
+            assertEquals(number, Double.parseDouble(number), slice(number).asDouble(), 0);
+        }
+        assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(slice("-0").asDouble()));
+    }
+
+    @Test
+    public void testSliceBoolean() {
+
+        assertTrue(slice("true").asBoolean());
+        assertTrue(slice("TRUE").asBoolean());
+        assertFalse(slice("false").asBoolean());
+        assertFalse(slice("yes").asBoolean());
+        assertFalse(slice("truer").asBoolean());
+    }
+}
@@ -0,0 +1,11 @@
+# Child headers come before their parents on purpose
+server-us < server-eu:
+    workers 8
+
+server-base:
+    bind 0.0.0.0 80
+    timeout 5000
+    workers 4
+
+server-eu < server-base:
+    bind 10.0.0.1 80
@@ -0,0 +1,5 @@
+a:
+    x ${b.y}
+
+b:
+    y ${a.x}
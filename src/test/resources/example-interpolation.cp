@@ -0,0 +1,8 @@
+global:
+    host 10.0.0.5
+    port 8080
+
+server:
+    bind ${global.host} ${global.port}
+    url http://${server.bind[0]}:${global.port}/
+    user ${sys:iris.test.user}
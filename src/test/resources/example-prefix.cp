@@ -0,0 +1,15 @@
+server-eu:
+    bind 10.0.0.1 80
+    backend-eu-1 10.0.1.1
+    backend-eu-2 10.0.1.2
+    backend-eu-10 10.0.1.10
+    backend-us-1 10.0.2.1
+
+server-us:
+    bind 10.0.0.2 80
+
+servers:
+    count 2
+
+client:
+    bind 10.0.0.3 8080
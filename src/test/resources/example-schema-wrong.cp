@@ -0,0 +1,7 @@
+server:
+    bind 0.0.0.0 eighty
+    mode slow
+
+timeout:
+    connect 5 parsecs
+    buffer 64q
@@ -0,0 +1,10 @@
+server:
+    bind 0.0.0.0 80
+    mode fast
+
+# Timeouts
+timeout:
+    connect 5s
+    buffer 64k
+    ratio 0.75
+    debug true